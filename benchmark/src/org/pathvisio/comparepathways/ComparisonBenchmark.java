@@ -0,0 +1,172 @@
+// Pathway Comparison plug-in,
+// a PathVisio plug-in for comparing 2 pathways based on Datanodes and the interaction between Datanodes
+// Copyright 2006-2011 BiGCaT Bioinformatics
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+package org.pathvisio.comparepathways;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.bridgedb.IDMapper;
+import org.bridgedb.bio.BioDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.pathvisio.core.model.ConverterException;
+import org.pathvisio.core.model.DataNodeType;
+import org.pathvisio.core.model.Pathway;
+import org.pathvisio.core.model.PathwayElement;
+
+/**
+ * JMH benchmarks of the phases of a pathway comparison, each at several pathway sizes. 
+ * The pathways come from the {@link SyntheticPathwayGenerator}; the comparisons run sequentially (without an ExecutorService) 
+ * and without an {@link XrefMappingCache}, against the in-memory IDMapper of the generated pair. Run them with 'ant benchmark'.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ComparisonBenchmark 
+{
+	/** number of DataNodes in each of the 2 pathways */
+	@Param({"100", "1000", "10000"})
+	int dataNodeCount;
+	
+	private Pathway pathway1;
+	private File gpmlFile1;
+	private PathwayIndex pathwayIndex1, pathwayIndex2;
+	private IDMapper idMapper;
+	private List<List<PathwayElement>> dataNodeMatches;
+	
+	/** 
+	 * Generates the pathways: 4/5 GeneProducts and 1/5 Metabolites, 4/5 of them overlapping (half of these through a mapping), 
+	 * in simple and anchored interactions. Checks the numbers of matches, a broken comparison must not give fast benchmarks; 
+	 * the pathways read back by the {@link GpmlStreamReader} have to give the same numbers. 
+	 */
+	@Setup(Level.Trial)
+	public void setUp() throws IOException, ConverterException
+	{
+		BioDataSource.init();
+		SyntheticPathwayGenerator generator = new SyntheticPathwayGenerator();
+		generator.setDataNodeCount(DataNodeType.GENEPRODUCT, dataNodeCount * 4 / 5);
+		generator.setDataNodeCount(DataNodeType.METABOLITE, dataNodeCount / 5);
+		generator.setOverlapRatio(0.8);
+		generator.setCrossDataSourceRatio(0.5);
+		generator.setSimpleInteractionCount(dataNodeCount / 10);
+		generator.setAnchoredInteractions(dataNodeCount / 20, 2);
+		generator.setExtraLineCount(dataNodeCount / 10);
+		SyntheticPathwayGenerator.PathwayPair pathwayPair = generator.generatePair();
+		
+		pathway1 = pathwayPair.getPathway1();
+		pathwayIndex1 = new PathwayIndex(pathway1);
+		pathwayIndex2 = new PathwayIndex(pathwayPair.getPathway2());
+		idMapper = pathwayPair.createIDMapper();
+		dataNodeMatches = compareDataNodes();
+		checkMatches("DataNode", pathwayPair.getExpectedDataNodeMatches(), dataNodeMatches.size());
+		checkMatches("interaction", pathwayPair.getExpectedInteractionMatches(), compareInteractions().size());
+		
+		gpmlFile1 = File.createTempFile("benchmark-pathway1", ".gpml");
+		File gpmlFile2 = File.createTempFile("benchmark-pathway2", ".gpml");
+		try {
+			pathway1.writeToXml(gpmlFile1, false);
+			pathwayPair.getPathway2().writeToXml(gpmlFile2, false);
+			PathwayIndex streamedIndex1 = new PathwayIndex(GpmlStreamReader.read(gpmlFile1));
+			PathwayIndex streamedIndex2 = new PathwayIndex(GpmlStreamReader.read(gpmlFile2));
+			List<List<PathwayElement>> streamedMatches = 
+				new PathwayElementComparision(streamedIndex1, streamedIndex2, idMapper, null).compareDataNodes();
+			checkMatches("streamed DataNode", pathwayPair.getExpectedDataNodeMatches(), streamedMatches.size());
+			checkMatches("streamed interaction", pathwayPair.getExpectedInteractionMatches(), 
+					new InteractionsComparison(streamedIndex1, streamedIndex2, streamedMatches).compareInteractions().size());
+		} finally {
+			gpmlFile2.delete();
+		}
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown()
+	{
+		gpmlFile1.delete();
+	}
+	
+	/** reads all of the GPML of Pathway1, as the 'Compare' tab does */
+	@Benchmark
+	public Pathway readGpml() throws ConverterException
+	{
+		Pathway pathway = new Pathway();
+		pathway.readFromXml(gpmlFile1, false);
+		return pathway;
+	}
+	
+	/** reads only the elements of the GPML of Pathway1 which the comparison needs, as the batch comparison does */
+	@Benchmark
+	public Pathway streamGpml() throws ConverterException
+	{
+		return GpmlStreamReader.read(gpmlFile1);
+	}
+	
+	private static void checkMatches(String matchKind, int expected, int found)
+	{
+		if(expected != found)
+			throw new IllegalStateException("Expected " + expected + " " + matchKind + " matches, found " + found);
+	}
+	
+	/** categorizes the DataNodes on their DataNodeType and indexes the lines */
+	@Benchmark
+	public PathwayIndex indexPathway()
+	{
+		return new PathwayIndex(pathway1);
+	}
+	
+	/** maps the Xrefs of Pathway1 and matches its DataNodes with Pathway2's */
+	@Benchmark
+	public List<List<PathwayElement>> compareDataNodes()
+	{
+		return new PathwayElementComparision(pathwayIndex1, pathwayIndex2, idMapper, null).compareDataNodes();
+	}
+	
+	@Benchmark
+	public List<List<List<PathwayElement>>> groupManyToManyMatches()
+	{
+		return PathwayElementComparision.groupManyToManyMatches(dataNodeMatches);
+	}
+	
+	@Benchmark
+	public List<Set<PathwayElement>> findOutInteractionsInPathway()
+	{
+		return new InteractionsComparison(pathwayIndex1, pathwayIndex2, dataNodeMatches).findOutInteractionsInPathway(pathwayIndex1);
+	}
+	
+	/** finds out the interactions in both the pathways and matches them */
+	@Benchmark
+	public List<List<Set<PathwayElement>>> compareInteractions()
+	{
+		return new InteractionsComparison(pathwayIndex1, pathwayIndex2, dataNodeMatches).compareInteractions();
+	}
+}
@@ -37,6 +37,7 @@ public class Activator implements BundleActivator
 	@Override
 	 public void start(BundleContext context) throws Exception 
 	 {
+		InMemoryIDMapper.registerDriver();
 		pwCompPlugin = new PathwayComparisonPlugin();
 	    context.registerService(Plugin.class.getName(), pwCompPlugin, null);
 	 }
@@ -0,0 +1,519 @@
+// Pathway Comparison plug-in,
+// a PathVisio plug-in for comparing 2 pathways based on Datanodes and the interaction between Datanodes
+// Copyright 2006-2011 BiGCaT Bioinformatics
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+package org.pathvisio.comparepathways;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.bridgedb.BridgeDb;
+import org.bridgedb.DataSource;
+import org.bridgedb.IDMapper;
+import org.bridgedb.IDMapperException;
+import org.bridgedb.IDMapperStack;
+import org.bridgedb.bio.BioDataSource;
+import org.pathvisio.core.debug.Logger;
+import org.pathvisio.core.model.ConverterException;
+import org.pathvisio.core.model.Pathway;
+import org.pathvisio.core.model.PathwayElement;
+
+/**
+ * Command-line (headless) entry point which compares every pathway in a directory of GPML files against every other one.
+ * The pairs are compared on a thread pool using the same {@link PathwayElementComparision} and {@link InteractionsComparison} 
+ * logic as the 'Compare' tab, and the numbers shown in the comparison statistics table are written to a tab separated file.
+ * <p>
+ * Usage: <code>BatchComparison [-gdb &lt;gdb file or BridgeDb connection string&gt;] [-mapping &lt;mapping file&gt;] 
+ * [-pivot &lt;system code&gt;] [-threads &lt;n&gt;] [-out &lt;tsv file&gt;] &lt;GPML directory&gt;</code>
+ * <p>
+ * It can also search a collection of pathways for the ones which overlap most with a query pathway 
+ * (see {@link PathwayCollectionIndex}). The index of the collection is built once with 
+ * <code>-pivot &lt;system code&gt; -buildindex &lt;index file&gt; &lt;GPML directory&gt;</code>, 
+ * after which <code>-index &lt;index file&gt; -query &lt;GPML file&gt; [-top &lt;k&gt;]</code> compares the query 
+ * with the k pathways sharing the most canonical Xrefs with it, and writes the same numbers as for the pairs. 
+ * <p>
+ * For large collections, <code>-pivot &lt;system code&gt; -threshold &lt;score&gt; &lt;GPML directory&gt;</code> only compares 
+ * the pairs which are likely to have a DataNode score of at least the threshold (see {@link MinHashIndex}), 
+ * and writes those of them which actually do.
+ * <p>
+ * At least one of -gdb and -mapping has to be given. The mapping file (see {@link InMemoryIDMapper}) is held in memory, 
+ * and is tried before the gdb if both are given. 
+ * With -pivot &lt;system code&gt;, the Xrefs of every pathway are mapped once to that DataSource and all the pairs are 
+ * matched on these canonical Xrefs (see {@link PathwayElementComparision#setPivotDataSource(DataSource)}).
+ */
+public class BatchComparison 
+{
+	private static final String TSV_HEADER = "Pathway 1\tPathway 2\t" +
+			"Datanodes total in Pathway 1\tDatanodes total in Pathway 2\tDatanode Matches\tDatanode Score\t" +
+			"Interactions total in Pathway 1\tInteractions total in Pathway 2\tInteraction Matches\tInteraction Score";
+	private static final String SEARCH_TSV_HEADER = "Query Pathway\tPathway\tShared canonical Xrefs\t" + 
+			TSV_HEADER.substring("Pathway 1\tPathway 2\t".length());
+	private static final String SIMILAR_PAIRS_TSV_HEADER = "Pathway 1\tPathway 2\tEstimated Datanode Score\t" + 
+			TSV_HEADER.substring("Pathway 1\tPathway 2\t".length());
+	private static final int DEFAULT_SEARCH_HITS = 10;
+	
+	private final IDMapper idMapper;
+	private final XrefMappingCache xrefMappingCache;
+	private final ExecutorService executorService;
+	private DataSource pivotDataSource;
+	
+	/**
+	 * @param idMapper IDMapper used for mapping the Xrefs of the pathways.
+	 * @param numberOfThreads size of the thread pool on which the pathways are loaded and compared.
+	 */
+	public BatchComparison(IDMapper idMapper, int numberOfThreads)
+	{
+		this.idMapper = idMapper;
+		this.xrefMappingCache = new XrefMappingCache(Integer.parseInt(ComparisonPreference.MAPPING_CACHE_SIZE.getDefault()));
+		this.executorService = Executors.newFixedThreadPool(numberOfThreads);
+	}
+	
+	/**
+	 * @param pivotDataSource DataSource to which the Xrefs of all the pathways are mapped before matching, 
+	 * null (the default) to map the Xrefs of the first pathway of each pair to the DataSources of the second one. 
+	 * A search of a {@link PathwayCollectionIndex} always uses the pivot of the index.
+	 */
+	public void setPivotDataSource(DataSource pivotDataSource)
+	{
+		this.pivotDataSource = pivotDataSource;
+	}
+	
+	/**
+	 * Lists the GPML files (*.gpml, *.xml) in a directory, sorted by their names.
+	 */
+	static File[] listGpmlFiles(File directory)
+	{
+		File[] gpmlFiles = directory.listFiles(new FileFilter() 
+		{
+			public boolean accept(File f) 
+			{
+				String name = f.getName().toLowerCase();
+				return f.isFile() && (name.endsWith(".gpml") || name.endsWith(".xml"));
+			}
+		});
+		if(gpmlFiles == null)
+			return new File[0];
+		Arrays.sort(gpmlFiles);
+		return gpmlFiles;
+	}
+	
+	/**
+	 * Loads the pathways in parallel and builds their {@link PathwayIndex}, so that it is built only once per pathway 
+	 * instead of once per pair. Only the elements the comparison needs are read, see {@link GpmlStreamReader}. 
+	 * @return the indexes of the loaded pathways, in the order of the files; null for the files which failed to load.
+	 */
+	private PathwayIndex[] loadPathways(final File[] gpmlFiles) throws InterruptedException
+	{
+		List<Future<PathwayIndex>> futures = new ArrayList<Future<PathwayIndex>>();
+		for(final File gpmlFile : gpmlFiles)
+		{
+			futures.add(executorService.submit(new Callable<PathwayIndex>() 
+			{
+				public PathwayIndex call() throws ConverterException 
+				{
+					return new PathwayIndex(GpmlStreamReader.read(gpmlFile));
+				}
+			}));
+		}
+		
+		PathwayIndex[] pathways = new PathwayIndex[gpmlFiles.length];
+		for(int i = 0; i < gpmlFiles.length; i++)
+		{
+			try {
+				pathways[i] = futures.get(i).get();
+			} catch (ExecutionException e) {
+				Logger.log.error("GPML file '" + gpmlFiles[i] + "' failed to load", e.getCause());
+			}
+		}
+		return pathways;
+	}
+	
+	/**
+	 * Compares 2 pathways the same way as the 'Compare' tab does. 
+	 * The pairs already run in parallel, so the parts of a single comparison are run sequentially 
+	 * (this also avoids waiting on the same thread pool from within one of its own tasks).
+	 * @return the comparison statistics of the 2 pathways, as a line of the tab separated file (without the pathway names).
+	 */
+	private String comparePathways(PathwayIndex pathway1, PathwayIndex pathway2)
+	{
+		return comparePathways(pathway1, pathway2, 0);
+	}
+	
+	/**
+	 * @see #comparePathways(PathwayIndex, PathwayIndex)
+	 * @return the comparison statistics of the 2 pathways, or null if their DataNode score is below minDataNodeScore; 
+	 * their interactions are then not compared.
+	 */
+	private String comparePathways(PathwayIndex pathway1, PathwayIndex pathway2, double minDataNodeScore)
+	{
+		PathwayElementComparision pwElemComp = new PathwayElementComparision(pathway1, pathway2, idMapper, xrefMappingCache);
+		pwElemComp.setPivotDataSource(pivotDataSource);
+		List<List<PathwayElement>> dataNodeCompResults = pwElemComp.compareDataNodes();
+		double dataNodeScore = Utility.getSimilarityScore(dataNodeCompResults.size(), pwElemComp.getDNcountInPw1(), pwElemComp.getDNcountInPw2());
+		if(dataNodeScore < minDataNodeScore)
+			return null;
+		
+		InteractionsComparison interactionsComp = new InteractionsComparison(pathway1, pathway2, dataNodeCompResults);
+		List<List<Set<PathwayElement>>> interactionCompResults = interactionsComp.compareInteractions();
+		
+		return pwElemComp.getDNcountInPw1() + "\t" + pwElemComp.getDNcountInPw2() + "\t" + dataNodeCompResults.size() + "\t" + 
+			formatScore(dataNodeScore) + "\t" + 
+			interactionsComp.getInteractionsCountInPw1() + "\t" + interactionsComp.getInteractionsCountInPw2() + "\t" + interactionCompResults.size() + "\t" + 
+			formatScore(Utility.getSimilarityScore(interactionCompResults.size(), 
+					interactionsComp.getInteractionsCountInPw1(), interactionsComp.getInteractionsCountInPw2()));
+	}
+	
+	private static String formatScore(double score)
+	{
+		//DecimalFormat is not thread-safe, the pairs are compared concurrently
+		return new DecimalFormat("0.####", new DecimalFormatSymbols(Locale.US)).format(score);
+	}
+	
+	/**
+	 * Compares all the pairs of pathways found in a directory and writes the results to a tab separated file.
+	 * 
+	 * @param gpmlDirectory directory containing the GPML files.
+	 * @param outputFile tab separated file to which the results are written, one line per pair of pathways.
+	 */
+	public void compareAllPairs(File gpmlDirectory, File outputFile) throws IOException, InterruptedException
+	{
+		final File[] gpmlFiles = listGpmlFiles(gpmlDirectory);
+		final PathwayIndex[] pathways = loadPathways(gpmlFiles);
+		Logger.log.info("Comparing all pairs of the " + gpmlFiles.length + " GPML files in " + gpmlDirectory);
+		
+		List<Future<String>> futures = new ArrayList<Future<String>>();
+		for(int i = 0; i < pathways.length; i++)
+		{
+			for(int j = i + 1; j < pathways.length; j++)
+			{
+				if(pathways[i] == null || pathways[j] == null)
+					continue;
+				final int index1 = i, index2 = j;
+				futures.add(executorService.submit(new Callable<String>() 
+				{
+					public String call() 
+					{
+						return gpmlFiles[index1].getName() + "\t" + gpmlFiles[index2].getName() + "\t" + 
+							comparePathways(pathways[index1], pathways[index2]);
+					}
+				}));
+			}
+		}
+		
+		writeResults(TSV_HEADER, futures, outputFile);
+	}
+	
+	/**
+	 * Compares 2 pathways, the command-line equivalent of 'Load Pathway Pair' in the 'Compare' tab: 
+	 * the 2 GPML files are loaded and indexed concurrently, and the pair is compared as soon as both are ready.
+	 * 
+	 * @param outputFile tab separated file to which the result is written, in the format of {@link #compareAllPairs(File, File)}.
+	 */
+	public void comparePair(final File gpmlFile1, final File gpmlFile2, File outputFile) throws IOException, InterruptedException
+	{
+		final PathwayIndex[] pathways = loadPathways(new File[] {gpmlFile1, gpmlFile2});
+		for(int i = 0; i < pathways.length; i++)
+		{
+			if(pathways[i] == null)
+				throw new IOException("GPML file '" + (i == 0 ? gpmlFile1 : gpmlFile2) + "' failed to load");
+		}
+		
+		List<Future<String>> futures = new ArrayList<Future<String>>();
+		futures.add(executorService.submit(new Callable<String>() 
+		{
+			public String call() 
+			{
+				return gpmlFile1.getName() + "\t" + gpmlFile2.getName() + "\t" + comparePathways(pathways[0], pathways[1]);
+			}
+		}));
+		writeResults(TSV_HEADER, futures, outputFile);
+	}
+	
+	/**
+	 * Compares only the pairs of pathways in a directory which are likely to have a DataNode score of at least the threshold: 
+	 * the canonical Xrefs of all the pathways are sketched in a {@link MinHashIndex}, and the candidate pairs it finds are 
+	 * compared in full. Only the pairs whose actual DataNode score reaches the threshold are written to the tab separated file. 
+	 * This requires a pivot DataSource.
+	 */
+	public void compareSimilarPairs(File gpmlDirectory, final double minDataNodeScore, File outputFile) throws IOException, InterruptedException
+	{
+		if(pivotDataSource == null)
+			throw new IllegalStateException("A pivot DataSource is needed for finding the similar pairs of pathways");
+		final File[] gpmlFiles = listGpmlFiles(gpmlDirectory);
+		final PathwayIndex[] pathways = loadPathways(gpmlFiles);
+		final List<Integer> loadedPathways = new ArrayList<Integer>();
+		for(int i = 0; i < pathways.length; i++)
+			if(pathways[i] != null)
+				loadedPathways.add(i);
+		PathwayIndex[] pathwaysToSketch = new PathwayIndex[loadedPathways.size()];
+		for(int i = 0; i < pathwaysToSketch.length; i++)
+			pathwaysToSketch[i] = pathways[loadedPathways.get(i)];
+		
+		XrefMappingStage xrefMappingStage = new XrefMappingStage(idMapper, xrefMappingCache);
+		PathwayIndex.CanonicalXrefs[] canonicalXrefs = xrefMappingStage.canonicalizeXrefs(pathwaysToSketch, pivotDataSource);
+		final MinHashIndex minHashIndex = new MinHashIndex(MinHashIndex.DEFAULT_SIGNATURE_SIZE, minDataNodeScore);
+		for(int i = 0; i < pathwaysToSketch.length; i++)
+			minHashIndex.add(PathwayCollectionIndex.getKeys(pathwaysToSketch[i], canonicalXrefs[i]));
+		List<int[]> candidatePairs = minHashIndex.getCandidatePairs();
+		Logger.log.info(minHashIndex + ": comparing " + candidatePairs.size() + " candidate pairs out of " + 
+				(long) pathwaysToSketch.length * (pathwaysToSketch.length - 1) / 2);
+		
+		List<Future<String>> futures = new ArrayList<Future<String>>();
+		for(final int[] candidatePair : candidatePairs)
+		{
+			final int index1 = loadedPathways.get(candidatePair[0]), index2 = loadedPathways.get(candidatePair[1]);
+			futures.add(executorService.submit(new Callable<String>() 
+			{
+				public String call() 
+				{
+					String statistics = comparePathways(pathways[index1], pathways[index2], minDataNodeScore);
+					if(statistics == null)
+						return null;
+					return gpmlFiles[index1].getName() + "\t" + gpmlFiles[index2].getName() + "\t" + 
+						formatScore(minHashIndex.estimateDice(candidatePair[0], candidatePair[1])) + "\t" + statistics;
+				}
+			}));
+		}
+		writeResults(SIMILAR_PAIRS_TSV_HEADER, futures, outputFile);
+	}
+	
+	/**
+	 * Writes the lines computed by the futures to a tab separated file, in the order in which they were submitted, 
+	 * irrespective of the order in which they finish. The futures which compute null are left out.
+	 */
+	private void writeResults(String header, List<Future<String>> futures, File outputFile) throws IOException, InterruptedException
+	{
+		BufferedWriter bufferedWriter = new BufferedWriter(new FileWriter(outputFile));
+		try {
+			bufferedWriter.append(header);
+			bufferedWriter.newLine();
+			for(Future<String> future : futures)
+			{
+				try {
+					String line = future.get();
+					if(line == null)
+						continue;
+					bufferedWriter.append(line);
+					bufferedWriter.newLine();
+				} catch (ExecutionException e) {
+					Logger.log.error("Exception during Pathway comparison", e.getCause());
+				}
+			}
+		} finally {
+			bufferedWriter.close();
+		}
+		Logger.log.info(xrefMappingCache.toString());
+	}
+	
+	/**
+	 * Builds the inverted index of the canonical Xrefs of all the pathways in a directory, which requires a pivot DataSource. 
+	 * The Xrefs of all the pathways are canonicalized in a single bulk mapping.
+	 */
+	public PathwayCollectionIndex buildCollectionIndex(File gpmlDirectory) throws InterruptedException
+	{
+		if(pivotDataSource == null)
+			throw new IllegalStateException("A pivot DataSource is needed for building a pathway collection index");
+		File[] gpmlFiles = listGpmlFiles(gpmlDirectory);
+		PathwayIndex[] pathways = loadPathways(gpmlFiles);
+		List<File> indexedFiles = new ArrayList<File>();
+		List<PathwayIndex> indexedPathways = new ArrayList<PathwayIndex>();
+		for(int i = 0; i < gpmlFiles.length; i++)
+		{
+			if(pathways[i] == null)
+				continue;
+			indexedFiles.add(gpmlFiles[i]);
+			indexedPathways.add(pathways[i]);
+		}
+		
+		XrefMappingStage xrefMappingStage = new XrefMappingStage(idMapper, xrefMappingCache);
+		PathwayIndex.CanonicalXrefs[] canonicalXrefs = xrefMappingStage.canonicalizeXrefs(
+				indexedPathways.toArray(new PathwayIndex[indexedPathways.size()]), pivotDataSource);
+		Logger.log.info("Indexed the canonical Xrefs of " + indexedFiles.size() + " pathways in " + gpmlDirectory);
+		return PathwayCollectionIndex.build(gpmlDirectory, indexedFiles, indexedPathways, canonicalXrefs, 
+				pivotDataSource, xrefMappingStage.getIDMapperIdentity());
+	}
+	
+	/**
+	 * Finds the pathways of the collection which share the most canonical Xrefs with the query pathway, then compares 
+	 * the query with each of them in full, on the canonical Xrefs of the index, and writes the results to a tab separated file.
+	 * 
+	 * @param maxHits the number of best matching pathways to compare the query with.
+	 */
+	public void searchCollection(File queryFile, PathwayCollectionIndex collectionIndex, int maxHits, File outputFile) 
+		throws IOException, InterruptedException
+	{
+		final PathwayIndex query = loadPathways(new File[] {queryFile})[0];
+		if(query == null)
+			throw new IOException("GPML file '" + queryFile + "' failed to load");
+		setPivotDataSource(collectionIndex.getPivotDataSource());
+		XrefMappingStage xrefMappingStage = new XrefMappingStage(idMapper, xrefMappingCache);
+		if(!xrefMappingStage.getIDMapperIdentity().equals(collectionIndex.getIDMapperIdentity()))
+			Logger.log.warn("The pathway collection index was built with another gdb, the search results may be incomplete");
+		PathwayIndex.CanonicalXrefs queryCanonicalXrefs = xrefMappingStage.canonicalizeXrefs(
+				new PathwayIndex[] {query}, pivotDataSource)[0];
+		
+		long searchStart = System.nanoTime();
+		final List<PathwayCollectionIndex.SearchHit> searchHits = collectionIndex.search(
+				PathwayCollectionIndex.getKeys(query, queryCanonicalXrefs), maxHits);
+		Logger.log.info("Found " + searchHits.size() + " of the " + collectionIndex.getPathwayCount() + " pathways overlapping with " + 
+				queryFile.getName() + " in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - searchStart) + " ms");
+		
+		File[] hitFiles = new File[searchHits.size()];
+		for(int i = 0; i < hitFiles.length; i++)
+			hitFiles[i] = searchHits.get(i).getFile();
+		final PathwayIndex[] hitPathways = loadPathways(hitFiles);
+		List<Future<String>> futures = new ArrayList<Future<String>>();
+		for(int i = 0; i < hitPathways.length; i++)
+		{
+			if(hitPathways[i] == null)
+				continue;
+			final int hitIndex = i;
+			final String queryName = queryFile.getName();
+			futures.add(executorService.submit(new Callable<String>() 
+			{
+				public String call() 
+				{
+					return queryName + "\t" + searchHits.get(hitIndex).getFile().getName() + "\t" + 
+						searchHits.get(hitIndex).getSharedKeyCount() + "\t" + comparePathways(query, hitPathways[hitIndex]);
+				}
+			}));
+		}
+		writeResults(SEARCH_TSV_HEADER, futures, outputFile);
+	}
+	
+	public void shutdown()
+	{
+		executorService.shutdown();
+	}
+	
+	/**
+	 * Connects to a BridgeDb database and/or a mapping file, either of which may be null. 
+	 * A plain gdb file name is assumed to be a Derby gdb (.pgdb / .bridge file), 
+	 * anything else is passed on to BridgeDb as a connection string (e.g. "idmapper-bridgerest:...").
+	 */
+	static IDMapperStack connectIDMapper(String gdb, String mappingFile) throws IDMapperException, ClassNotFoundException
+	{
+		Class.forName("org.bridgedb.rdb.IDMapperRdb");
+		InMemoryIDMapper.registerDriver();
+		BioDataSource.init();
+		IDMapperStack idMapperStack = new IDMapperStack();
+		if(mappingFile != null)
+			idMapperStack.addIDMapper(BridgeDb.connect(InMemoryIDMapper.DRIVER_PREFIX + ":" + mappingFile));
+		if(gdb != null)
+		{
+			String connectionString = gdb.startsWith("idmapper-") ? gdb : "idmapper-pgdb:" + gdb;
+			idMapperStack.addIDMapper(BridgeDb.connect(connectionString));
+		}
+		return idMapperStack;
+	}
+	
+	private static void printUsage()
+	{
+		System.err.println("Usage: BatchComparison [-gdb <gdb file or BridgeDb connection string>] [-mapping <mapping file>] " +
+				"[-pivot <system code>] [-threads <n>] [-out <tsv file>] <GPML directory>");
+		System.err.println("   or: BatchComparison [-gdb ...] [-mapping ...] -pivot <system code> -threshold <score> " + 
+				"[-threads <n>] [-out <tsv file>] <GPML directory>");
+		System.err.println("   or: BatchComparison [-gdb ...] [-mapping ...] -pivot <system code> -buildindex <index file> <GPML directory>");
+		System.err.println("   or: BatchComparison [-gdb ...] [-mapping ...] [-threads <n>] [-out <tsv file>] " + 
+				"-index <index file> -query <GPML file> [-top <k>]");
+		System.err.println("   or: BatchComparison [-gdb ...] [-mapping ...] [-pivot <system code>] [-out <tsv file>] " + 
+				"-pair <GPML file 1> <GPML file 2>");
+		System.err.println("At least one of -gdb and -mapping is required, the -threshold score has to be in (0, 1].");
+	}
+	
+	public static void main(String[] args) throws Exception
+	{
+		String gdb = null;
+		String mappingFile = null;
+		String pivotSystemCode = null;
+		int numberOfThreads = Runtime.getRuntime().availableProcessors();
+		File outputFile = new File("comparison-results.tsv");
+		File gpmlDirectory = null;
+		File buildIndexFile = null, indexFile = null, queryFile = null;
+		File pairFiles[] = null;
+		int maxHits = DEFAULT_SEARCH_HITS;
+		Double minDataNodeScore = null;
+		
+		for(int i = 0; i < args.length; i++)
+		{
+			if(args[i].equals("-gdb") && i + 1 < args.length)
+				gdb = args[++i];
+			else if(args[i].equals("-mapping") && i + 1 < args.length)
+				mappingFile = args[++i];
+			else if(args[i].equals("-pivot") && i + 1 < args.length)
+				pivotSystemCode = args[++i];
+			else if(args[i].equals("-threads") && i + 1 < args.length)
+				numberOfThreads = Integer.parseInt(args[++i]);
+			else if(args[i].equals("-out") && i + 1 < args.length)
+				outputFile = new File(args[++i]);
+			else if(args[i].equals("-buildindex") && i + 1 < args.length)
+				buildIndexFile = new File(args[++i]);
+			else if(args[i].equals("-index") && i + 1 < args.length)
+				indexFile = new File(args[++i]);
+			else if(args[i].equals("-query") && i + 1 < args.length)
+				queryFile = new File(args[++i]);
+			else if(args[i].equals("-top") && i + 1 < args.length)
+				maxHits = Integer.parseInt(args[++i]);
+			else if(args[i].equals("-threshold") && i + 1 < args.length)
+				minDataNodeScore = Double.parseDouble(args[++i]);
+			else if(args[i].equals("-pair") && i + 2 < args.length)
+				pairFiles = new File[] {new File(args[++i]), new File(args[++i])};
+			else
+				gpmlDirectory = new File(args[i]);
+		}
+		boolean searching = indexFile != null && queryFile != null;
+		if((gdb == null && mappingFile == null) || ((buildIndexFile != null || minDataNodeScore != null) && pivotSystemCode == null) || 
+				(minDataNodeScore != null && !(minDataNodeScore > 0 && minDataNodeScore <= 1)) || 
+				(!searching && pairFiles == null && (gpmlDirectory == null || !gpmlDirectory.isDirectory())))
+		{
+			printUsage();
+			System.exit(1);
+		}
+		
+		BatchComparison batchComparison = new BatchComparison(connectIDMapper(gdb, mappingFile), numberOfThreads);
+		if(pivotSystemCode != null)
+			batchComparison.setPivotDataSource(DataSource.getBySystemCode(pivotSystemCode));
+		try {
+			if(pairFiles != null)
+				batchComparison.comparePair(pairFiles[0], pairFiles[1], outputFile);
+			else if(searching)
+				batchComparison.searchCollection(queryFile, PathwayCollectionIndex.load(indexFile), maxHits, outputFile);
+			else if(buildIndexFile != null)
+				batchComparison.buildCollectionIndex(gpmlDirectory).save(buildIndexFile);
+			else if(minDataNodeScore != null)
+				batchComparison.compareSimilarPairs(gpmlDirectory, minDataNodeScore, outputFile);
+			else
+				batchComparison.compareAllPairs(gpmlDirectory, outputFile);
+		} finally {
+			batchComparison.shutdown();
+		}
+	}
+}
@@ -25,9 +25,14 @@ import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.text.DecimalFormat;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import javax.swing.BorderFactory;
 import javax.swing.JButton;
@@ -35,21 +40,26 @@ import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JTable;
 import javax.swing.JTextField;
+import javax.swing.SwingUtilities;
 import javax.swing.SwingWorker;
 import javax.swing.border.Border;
 import javax.swing.table.DefaultTableModel;
 import javax.swing.table.TableModel;
 
+import org.bridgedb.DataSource;
+import org.bridgedb.IDMapper;
+import org.bridgedb.IDMapperStack;
 import org.pathvisio.core.Engine;
+import org.pathvisio.core.debug.Logger;
 import org.pathvisio.core.model.ConverterException;
 import org.pathvisio.core.model.MLine;
 import org.pathvisio.core.model.Pathway;
 import org.pathvisio.core.model.PathwayElement;
+import org.pathvisio.core.preferences.PreferenceManager;
 import org.pathvisio.core.util.ProgressKeeper;
 import org.pathvisio.core.view.VPathway;
 import org.pathvisio.gui.ProgressDialog;
 import org.pathvisio.gui.SwingEngine;
-import org.pathvisio.gui.view.VPathwaySwing;
 
 import com.jgoodies.forms.layout.CellConstraints;
 import com.jgoodies.forms.layout.FormLayout;
@@ -64,23 +74,93 @@ public class ComparePane extends JPanel
 	private Engine engine;
 	private SwingEngine swingEngine;
 	
+	/** the loads and compares run one after the other on this single thread, in the order in which they were asked for */
+	private final ExecutorService taskQueue = ParallelTasks.createThreadPool(1);
+	/** builds the VPathways of the 2 pathways side by side, it does not queue behind the comparisons */
+	private final ExecutorService vPathwayExecutor = ParallelTasks.createThreadPool(2);
+	/** reads the 2 pathways of a 'Load Pathway Pair' side by side, while the load waits on the taskQueue */
+	private final ExecutorService pairLoadExecutor = ParallelTasks.createThreadPool(2);
+	
+	// the loaded pathways and their file names; only the tasks on the taskQueue (and the pair loads they wait for) access these, 
+	// the EDT does not
 	private final Pathway pathwayArr[] = new Pathway[2];
-	private final VPathway vPathwayArr[] = new VPathway[2];
+	private final String pathwayNameArr[] = new String[2];
+	/** the comparison works on these snapshots of the loaded pathways, they are (re)built whenever a pathway is loaded */
+	private final PathwayIndex pathwayIndexArr[] = new PathwayIndex[2];
+	
+	// state of Pathway1 and Pathway2 as seen on the EDT: loaded successfully, and the number of loads still queued
+	private final boolean pathwayLoadedArr[] = new boolean[2];
+	private final int queuedLoadsArr[] = new int[2];
 	
 	private final JTextField textField_pathwayPath_arr[] = {new JTextField(), new JTextField()};
 	private final JButton button_loadPathway1 = new JButton("Load Pathway1"),
-		button_loadPathway2 = new JButton("Load Pathway2"), comparePathwaysButton = new JButton("Compare Pathways"),
+		button_loadPathway2 = new JButton("Load Pathway2"), button_loadPair = new JButton("Load Pathway Pair"), 
+		comparePathwaysButton = new JButton("Compare Pathways"),
 		button_saveResults = new JButton("Save Comparison Results");
 	private JTable statsTable;
+	/** results of the comparison which finished last, accessed only on the EDT */
+	private ComparisonResults lastComparisonResults;
 	
-	private ComparePopup comparePopup;
+	private XrefMappingCache xrefMappingCache;
+	/** the mapping file set in the preferences, or null */
+	private final File mappingFile;
+	/** mapper of the mapping file, or null while it is loading or if it failed to load; taskQueue only. It is tried before the current gdb */
+	private IDMapper mappingFileIDMapper;
+	/** stack of the mappingFileIDMapper and the current gdb, rebuilt only when PathVisio switches to another gdb stack; taskQueue only */
+	private IDMapperStack combinedIDMapper;
+	private IDMapper combinedGdb;
+	private ExecutorService comparisonExecutor;
+	private ComparisonMetrics comparisonMetrics;
 	
-	public ComparePane(SwingEngine swingEngine, ComparePopup comparePopup)
+	/**
+	 * @param mappingFile mapping file, used along with the gdb selected in PathVisio; may be null. 
+	 * It is loaded in the background, as the first task of the queue, so that the comparisons wait for it.
+	 * @param comparisonExecutor executor on which the parts of a comparison are run in parallel, 
+	 * or null to run the comparison sequentially.
+	 * @param comparisonMetrics to which the timings and counters of every load and comparison are added.
+	 */
+	public ComparePane(SwingEngine swingEngine, XrefMappingCache xrefMappingCache, File mappingFile, 
+			ExecutorService comparisonExecutor, ComparisonMetrics comparisonMetrics)
 	{
 		this.swingEngine = swingEngine;
 		this.engine = swingEngine.getEngine();
-		this.comparePopup = comparePopup;
+		this.xrefMappingCache = xrefMappingCache;
+		this.mappingFile = mappingFile;
+		this.comparisonExecutor = comparisonExecutor;
+		this.comparisonMetrics = comparisonMetrics;
 		createComparePanel();
+		if(mappingFile != null)
+			loadMappingFile();
+	}
+	
+	/**
+	 * Loads the mapping file on the taskQueue, ahead of any load or compare, so that it does not delay PathVisio's start-up. 
+	 * No progress dialog is shown for it; a mapping file which fails to load is logged, the comparisons then use the gdb only.
+	 */
+	private void loadMappingFile()
+	{
+		taskQueue.execute(new Runnable() 
+		{
+			public void run() 
+			{
+				try {
+					mappingFileIDMapper = InMemoryIDMapper.read(mappingFile);
+					Logger.log.info("Loaded the mapping file " + mappingFile + ": " + mappingFileIDMapper);
+				} catch (IOException e) {
+					Logger.log.error("Unable to read the mapping file " + mappingFile, e);
+				}
+			}
+		});
+	}
+	
+	/**
+	 * Stops the loads and compares which are still queued, called when the plug-in is unloaded.
+	 */
+	void shutdown()
+	{
+		taskQueue.shutdownNow();
+		vPathwayExecutor.shutdownNow();
+		pairLoadExecutor.shutdownNow();
 	}
 	
 	/**Lays out the UI for the 'Compare' tab*/
@@ -93,6 +173,7 @@ public class ComparePane extends JPanel
 		textField_pathwayPath_arr[1].setBackground(Color.WHITE);
 		textField_pathwayPath_arr[1].setEditable(false);
 		button_loadPathway2.addActionListener(jButtonsCommonActionListner);
+		button_loadPair.addActionListener(jButtonsCommonActionListner);
 	
 		comparePathwaysButton.setEnabled(false);
 		comparePathwaysButton.addActionListener(jButtonsCommonActionListner);		
@@ -111,6 +192,7 @@ public class ComparePane extends JPanel
 		comparePanel.setBorder (BorderFactory.createTitledBorder (etch, "Compare Pathways"));
 		comparePanel.add (textField_pathwayPath_arr[0], cc.xyw(2,6,3));
 		comparePanel.add(button_loadPathway1, cc.xy(6,6));
+		comparePanel.add(button_loadPair, cc.xy(6,8));
 		comparePanel.add(textField_pathwayPath_arr[1], cc.xyw(2,10,3));
 		comparePanel.add(button_loadPathway2, cc.xy(6,10));
 		comparePanel.add(comparePathwaysButton, cc.xyw(1,12,5, "center, top"));
@@ -141,7 +223,7 @@ public class ComparePane extends JPanel
 	
 	//<---------------Listeners start--------------->
 	/**
-	 * common ActionListener for the  JButtons: 'Compare', 'Load Pathway1', 'Load Pathway2' 
+	 * common ActionListener for the  JButtons: 'Compare', 'Load Pathway1', 'Load Pathway2', 'Load Pathway Pair' 
 	 * and 'Save Comparison Results'
 	 */
 	private ActionListener jButtonsCommonActionListner = new ActionListener()
@@ -154,6 +236,10 @@ public class ComparePane extends JPanel
 			{
 				handleLoadPathwayAction(button);
 			}
+			else if(button == button_loadPair)
+			{
+				handleLoadPairAction();
+			}
 			// handling "Compare" button events
 			else if (button == comparePathwaysButton)
 			{
@@ -170,9 +256,11 @@ public class ComparePane extends JPanel
 	//<------------------Listeners end------------------->
 	
 	/**	
-	 * loads {@link Pathway} (the Data Model) and 
-	 * {@link VPathway} (the Graphics corresponding to the Data Model) objects through
-	 * a custom fileChooser method defined in {@link Utility} class 
+	 * loads a {@link Pathway} (the Data Model) object through
+	 * a custom fileChooser method defined in {@link Utility} class. 
+	 * The VPathway objects (the Graphics corresponding to the Data Model) are built by each comparison, 
+	 * when its window is shown for the first time. 
+	 * The pathway is loaded in the background, after the loads and compares that were queued before it.
 	 * 
 	 * @param button The {@link JButton} on which the click event occurred, can be either 'Load Pathway 1' or 'Load Pathway 2' button
 	 */
@@ -183,165 +271,579 @@ public class ComparePane extends JPanel
 			return;
 		
 		byte pathwayIndex = (button == button_loadPathway1 ) ? (byte) 0: (byte)1;
-		boolean loadPathwaySuccess = loadPathway(pathwayIndex, pathwayFile);
+		queuedLoadsArr[pathwayIndex]++;
+		updateCompareButton();
+		loadPathway(pathwayIndex, pathwayFile);
+	}
+	
+	/**
+	 * Handles click event on the button 'Load Pathway Pair': asks for both GPML files, 
+	 * loads them concurrently and compares them as soon as both are loaded.
+	 */
+	private void handleLoadPairAction()
+	{
+		File pathwayFiles[] = new File[2];
+		JButton loadButtons[] = {button_loadPathway1, button_loadPathway2};
+		for(int i = 0; i < 2; i++)
+		{
+			pathwayFiles[i] = Utility.showLoadPathwayDialog(swingEngine.getApplicationPanel(), loadButtons[i].getText());
+			if(pathwayFiles[i] == null) /* if the user cancels either "Load Pathway" dialog, do not proceed further*/
+				return;
+		}
 		
+		for(int i = 0; i < 2; i++)
+			queuedLoadsArr[i]++;
+		updateCompareButton();
+		loadPathwayPair(pathwayFiles);
+		//queued right behind the pair load, so that it compares the pair even if other loads are queued in the meantime; 
+		//it is skipped if either pathway fails to load
+		handleComparePathwayAction();
+	}
+	
+	/**
+	 * Called on the EDT once a pathway has been loaded (or failed to load).
+	 */
+	private void pathwayLoaded(byte pathwayIndex, File pathwayFile, boolean loadPathwaySuccess)
+	{
+		queuedLoadsArr[pathwayIndex]--;
+		pathwayLoadedArr[pathwayIndex] = loadPathwaySuccess;
 		if(loadPathwaySuccess)
 		{
 			//pathField related settings on loading a pathway
 			textField_pathwayPath_arr[pathwayIndex].setText(pathwayFile.getAbsolutePath());
 			textField_pathwayPath_arr[pathwayIndex].setToolTipText(pathwayFile.getAbsolutePath());
 			textField_pathwayPath_arr[pathwayIndex].setCaretPosition(0);
-			comparePopup.getInternalFrameArr()[pathwayIndex].setTitle( "Pathway#" + (pathwayIndex+1) + " ( " + pathwayFile.getName() + " )" );
 		} else 
 		{
 			//reset the pathField to default state
 			textField_pathwayPath_arr[pathwayIndex].setText(null);
 			textField_pathwayPath_arr[pathwayIndex].setToolTipText(null);
 		}
-		
-		// Compare Button is enabled only after both the pathways are loaded 
-		if(vPathwayArr[0] != null && vPathwayArr[1] != null)
-			comparePathwaysButton.setEnabled(true);
-		else
-			comparePathwaysButton.setEnabled(false);
+		updateCompareButton();
+	}
+	
+	/**
+	 * Compare Button is enabled only after both the pathways are loaded, or queued to be loaded. 
+	 */
+	private void updateCompareButton()
+	{
+		comparePathwaysButton.setEnabled((pathwayLoadedArr[0] || queuedLoadsArr[0] > 0) && 
+				(pathwayLoadedArr[1] || queuedLoadsArr[1] > 0));
+	}
+	
+	/**
+	 * Queues a task (a load or the start of a compare) behind the tasks queued before it. 
+	 * A (non-modal) progress dialog is shown as soon as the task starts running; 
+	 * the task has to call {@link ProgressKeeper#finished()} from its done() method, which closes the dialog. 
+	 * If cancellable, the dialog has a cancel button which cancels the ProgressKeeper; it is up to the task to stop then.
+	 */
+	private void queueTask(final Runnable task, final ProgressKeeper progressKeeper, final String taskName, 
+			final boolean cancellable)
+	{
+		taskQueue.execute(new Runnable() 
+		{
+			public void run() 
+			{
+				SwingUtilities.invokeLater(new Runnable() 
+				{
+					public void run() 
+					{
+						if(progressKeeper.isFinished())
+							return;
+						progressKeeper.setTaskName(taskName);
+						ProgressDialog progressDialog = new ProgressDialog(null,"Comparison plug-in", progressKeeper, cancellable, false);
+						progressDialog.setVisible(true);
+					}
+				});
+				task.run();
+			}
+		});
+	}
+	
+	/**
+	 * @return the IDMapper with which the pathways are compared: the current gdb, preceded by the mapping file if there is one. 
+	 * The same IDMapper is returned for as long as the current gdb stays the same, the comparisons synchronize on it. 
+	 * Runs on the taskQueue, after the mapping file has been loaded.
+	 */
+	private IDMapper getIDMapper()
+	{
+		IDMapperStack currentGdb = swingEngine.getGdbManager().getCurrentGdb();
+		if(mappingFileIDMapper == null)
+			return currentGdb;
+		if(combinedIDMapper == null || combinedGdb != currentGdb)
+		{
+			combinedIDMapper = new IDMapperStack();
+			combinedIDMapper.addIDMapper(mappingFileIDMapper);
+			combinedIDMapper.addIDMapper(currentGdb);
+			combinedGdb = currentGdb;
+		}
+		return combinedIDMapper;
 	}
 	
 	/** 
 	 * handles click event on 'Compare Pathways' button. 
-	 * Pops-up a progress-bar while it does pathways comparison in the background.   
-	 * 
-	 * @returns true if pathway-comparison succeeds 
+	 * The pathways to compare are the ones loaded by the loads queued before the comparison. 
+	 * Every comparison is a session of its own: it runs in the background, independently of the other comparisons,
+	 * and its results are shown in a new window as soon as the first matches are found.   
 	 */
-	private boolean handleComparePathwayAction()
+	private void handleComparePathwayAction()
 	{
-		//If BridgeDB IDMapperStack is empty, then do not proceed further
-		if(swingEngine.getGdbManager().getCurrentGdb().getSize() == 0)
+		//If BridgeDB IDMapperStack is empty and there is no mapping file, then do not proceed further
+		if(swingEngine.getGdbManager().getCurrentGdb().getSize() == 0 && mappingFile == null)
 		{
 			JOptionPane.showMessageDialog(null, "Please select a biological database first.", 
 					"Note", JOptionPane.PLAIN_MESSAGE);
-			return false;
+			return;
 		}
 		
-		final ProgressKeeper progressKeeper = new ProgressKeeper();
-		final ProgressDialog progressDialog = new ProgressDialog(null,"Comparison plug-in", progressKeeper, false, true);
+		//determinate progress in percent: the first half for the DataNodes, the second half for the Interactions
+		final ProgressKeeper progressKeeper = new ProgressKeeper(100);
+		String pivotSystemCode = PreferenceManager.getCurrent().get(ComparisonPreference.PIVOT_DATASOURCE);
+		final DataSource pivotDataSource = pivotSystemCode != null && pivotSystemCode.length() > 0 ? 
+				DataSource.getBySystemCode(pivotSystemCode) : null;
+		//the window in which this comparison is shown, its VPathways are built for it once it opens
+		final ComparePopup comparePopup = new ComparePopup();
 		
-		SwingWorker<ComparisonResults, Void> swingWorker = new SwingWorker<ComparisonResults, Void>() 
+		class CompareWorker extends SwingWorker<ComparisonResults, ResultsBatch> implements ComparisonListener 
 		{
-			protected ComparisonResults doInBackground() 
+			//the pathways loaded by the loads queued before this comparison, later loads do not affect them
+			private final Pathway comparedPathwayArr[] = new Pathway[2];
+			private final PathwayIndex comparedPathwayIndexArr[] = new PathwayIndex[2];
+			private final String comparedPathwayNameArr[] = new String[2];
+			private final String statistics[] = new String[8];
+			private final ComparisonMetrics.Recorder metrics = new ComparisonMetrics.Recorder();
+			//taken along with the snapshot, once the mapping file has been loaded
+			private IDMapper idMapper;
+			//accessed only on the EDT
+			private PathwaysInfo pathwaysInfo;
+			private ResultsPane resultsPane;
+			private boolean finished;
+			//the VPathways are built in the background when the first matches are to be shown, see buildVPathways()
+			private final VPathway vPathwayArr[] = new VPathway[2];
+			private int vPathwaysToBuild = -1;
+			private long vPathwayStart;
+			private Throwable vPathwayFailure;
+			//the matches which arrive while the VPathways are built, they are added once the window opens
+			private final List<List<List<PathwayElement>>> heldDNMatches = new ArrayList<List<List<PathwayElement>>>();
+			private final List<List<Set<PathwayElement>>> heldInteractionMatches = new ArrayList<List<Set<PathwayElement>>>();
+			private ComparisonResults heldComparisonResults;
+			private String heldStopReason;
+			
+			/** runs on the taskQueue, after the mapping file and the loads queued before this comparison */
+			void takeSnapshotOfLoadedPathways()
+			{
+				System.arraycopy(pathwayArr, 0, comparedPathwayArr, 0, 2);
+				System.arraycopy(pathwayIndexArr, 0, comparedPathwayIndexArr, 0, 2);
+				System.arraycopy(pathwayNameArr, 0, comparedPathwayNameArr, 0, 2);
+				idMapper = getIDMapper();
+			}
+			
+			public void dataNodeMatchesFound(List<List<List<PathwayElement>>> manyToManyDNMatches)
+			{
+				publish(new ResultsBatch(manyToManyDNMatches, null));
+			}
+			
+			public void interactionMatchesFound(List<List<Set<PathwayElement>>> interactionMatches)
+			{
+				publish(new ResultsBatch(null, interactionMatches));
+			}
+			
+			/** runs on the EDT, the batches published since the last call are added to the results window in one go */
+			protected void process(List<ResultsBatch> batches)
+			{
+				//done() has already added everything, or the user closed the window
+				if(finished || comparePopup.isClosed())
+					return;
+				List<List<List<PathwayElement>>> manyToManyDNMatches = new ArrayList<List<List<PathwayElement>>>();
+				List<List<Set<PathwayElement>>> interactionMatches = new ArrayList<List<Set<PathwayElement>>>();
+				for(ResultsBatch batch : batches)
+				{
+					if(batch.manyToManyDNMatches != null)
+						manyToManyDNMatches.addAll(batch.manyToManyDNMatches);
+					if(batch.interactionMatches != null)
+						interactionMatches.addAll(batch.interactionMatches);
+				}
+				addMatches(manyToManyDNMatches, interactionMatches);
+			}
+			
+			/** adds matches to the results window, or holds them until the window opens */
+			private void addMatches(List<List<List<PathwayElement>>> manyToManyDNMatches, 
+					List<List<Set<PathwayElement>>> interactionMatches)
+			{
+				if(resultsPane == null)
+				{
+					heldDNMatches.addAll(manyToManyDNMatches);
+					heldInteractionMatches.addAll(interactionMatches);
+					buildVPathways();
+					return;
+				}
+				long tableStart = metrics.start();
+				resultsPane.addDataNodeMatches(manyToManyDNMatches);
+				resultsPane.addInteractionMatches(interactionMatches);
+				metrics.stop(ComparisonMetrics.Phase.RESULTS_TABLE, tableStart);
+			}
+			
+			/** adds the final results to the results window, or holds them until the window opens */
+			private void finishResults(ComparisonResults comparisonResults)
+			{
+				if(resultsPane == null)
+				{
+					heldComparisonResults = comparisonResults;
+					buildVPathways();
+					return;
+				}
+				long tableStart = metrics.start();
+				resultsPane.finishResults(comparisonResults.getDNCompResultsParsed(), comparisonResults.getInteractionCompResults());
+				metrics.stop(ComparisonMetrics.Phase.RESULTS_TABLE, tableStart);
+				comparisonMetrics.comparisonFinished(metrics);
+			}
+			
+			/** 
+			 * Starts building the VPathways of this comparison, if that has not started yet. 
+			 * They are only built once there is something to show, a comparison which fails or is cancelled before its 
+			 * first matches never needs them. The 2 sides are built in parallel in the background, the EDT does not wait for them: 
+			 * the window opens once both are built. 
+			 */
+			private void buildVPathways()
+			{
+				if(vPathwaysToBuild >= 0)
+					return;
+				vPathwaysToBuild = 2;
+				vPathwayStart = metrics.start();
+				for(int i = 0; i < 2; i++)
+				{
+					final int side = i;
+					vPathwayExecutor.execute(new SwingWorker<VPathway, Void>() 
+					{
+						protected VPathway doInBackground() 
+						{
+							return comparePopup.createVPathway(side, comparedPathwayArr[side]);
+						}
+						
+						/** runs on the EDT */
+						protected void done()
+						{
+							try 
+							{
+								vPathwayArr[side] = get();
+							} catch (ExecutionException e) {
+								vPathwayFailure = e.getCause();
+							} catch (InterruptedException e) {
+								vPathwayFailure = e;
+							}
+							if(--vPathwaysToBuild == 0)
+								vPathwaysBuilt();
+						}
+					});
+				}
+			}
+			
+			/** runs on the EDT once both VPathways are built: opens the results window and adds what was held back */
+			private void vPathwaysBuilt()
 			{
-				progressKeeper.setTaskName("Comparing Pathway");
-				//reset already highlighted nodes in both pathways before comparison
-				vPathwayArr[0].resetHighlight();
-				vPathwayArr[1].resetHighlight();
+				metrics.stop(ComparisonMetrics.Phase.VPATHWAY_CONSTRUCTION, vPathwayStart);
+				if(vPathwayFailure != null)
+				{
+					for(VPathway vPathway : vPathwayArr)
+						if(vPathway != null)
+							vPathway.dispose();
+					swingEngine.handleConverterException("Exception while drawing the compared Pathways", null, vPathwayFailure);
+					if(heldComparisonResults != null)
+						comparisonMetrics.comparisonFinished(metrics);
+					return;
+				}
 				
 				//populating pathway 1 and 2's info related to Pathway and VPathway object 
 				//in a single class object 'PathwaysInfo' and communicating this to other classes.  
-				PathwaysInfo pathwaysInfo = PathwaysInfo.getStaticInstance();
-				pathwaysInfo.setPathwaysInfo(pathwayArr, vPathwayArr); 
+				pathwaysInfo = new PathwaysInfo(comparedPathwayArr, vPathwayArr);
+				for(int i = 0; i < 2; i++)
+					comparePopup.getInternalFrameArr()[i].setTitle( "Pathway#" + (i+1) + " ( " + comparedPathwayNameArr[i] + " )" );
+				resultsPane = comparePopup.displayPathwayComparisonInNewWindow(pathwaysInfo);
 				
-				PathwayElementComparision pwElemComp = new PathwayElementComparision(pathwaysInfo, swingEngine.getGdbManager().getCurrentGdb());
+				addMatches(heldDNMatches, heldInteractionMatches);
+				heldDNMatches.clear();
+				heldInteractionMatches.clear();
+				if(heldComparisonResults != null)
+					finishResults(heldComparisonResults);
+				else if(heldStopReason != null)
+					resultsPane.stopResults(heldStopReason);
+			}
+			
+			/** runs on the EDT, when one of the loads queued before this comparison failed and it was skipped */
+			private void reportSkippedComparison()
+			{
+				String failedPathways = comparedPathwayIndexArr[0] == null ? 
+						(comparedPathwayIndexArr[1] == null ? "Pathway1 and Pathway2" : "Pathway1") : "Pathway2";
+				String message = "Comparison skipped: " + failedPathways + " failed to load";
+				Logger.log.warn(message);
+				JOptionPane.showMessageDialog(null, message, "Pathway Comparison plug-in", JOptionPane.INFORMATION_MESSAGE);
+			}
+			
+			/** 
+			 * marks the matches shown so far as partial results, when the comparison is cancelled or fails. 
+			 * If the window is still to be opened, this is done once it opens; without matches there is no window.
+			 */
+			private void stopResults(String reason)
+			{
+				if(comparePopup.isClosed())
+					return;
+				if(resultsPane == null)
+					heldStopReason = reason;
+				else
+					resultsPane.stopResults(reason);
+			}
+			
+			protected ComparisonResults doInBackground() 
+			{
+				//skip the comparison if one of the loads queued before it failed
+				if(comparedPathwayIndexArr[0] == null || comparedPathwayIndexArr[1] == null)
+					return null;
+				
+				//the comparison itself only works on the Pathway objects, the matches are highlighted afterwards by the ResultsPane
+				PathwayElementComparision pwElemComp = new PathwayElementComparision(comparedPathwayIndexArr[0], comparedPathwayIndexArr[1], 
+						idMapper, xrefMappingCache);
+				pwElemComp.setExecutorService(comparisonExecutor);
+				pwElemComp.setProgressKeeper(progressKeeper, 0, 50);
+				pwElemComp.setComparisonListener(this);
+				pwElemComp.setMetrics(metrics);
+				pwElemComp.setPivotDataSource(pivotDataSource);
 				List<List<PathwayElement>> dataNodeCompResults = pwElemComp.compareDataNodes();
+				List<List<List<PathwayElement>>> manyToManyDNCompResults = pwElemComp.getManyToManyDNComparisonResults();
+				Logger.log.info(xrefMappingCache.toString());
 				
-				InteractionsComparison interactionsComp = new InteractionsComparison(pathwaysInfo, dataNodeCompResults);
+				InteractionsComparison interactionsComp = new InteractionsComparison(comparedPathwayIndexArr[0], comparedPathwayIndexArr[1], 
+						dataNodeCompResults);
+				interactionsComp.setExecutorService(comparisonExecutor);
+				interactionsComp.setProgressKeeper(progressKeeper, 50, 100);
+				interactionsComp.setComparisonListener(this);
+				interactionsComp.setMetrics(metrics);
 				List<List<Set<PathwayElement>>> interactionCompResults = interactionsComp.compareInteractions();
 				
-				//Populating the statistics table with data from comparison results
+				//statistics table data from comparison results
 				//datanode comparison
 				DecimalFormat decFormat = new DecimalFormat("#.##");
-				statsTable.getModel().setValueAt("  " + pwElemComp.getDNcountInPw1(), 0, 1);
-				statsTable.getModel().setValueAt("  " + pwElemComp.getDNcountInPw2(), 1, 1);
-				statsTable.getModel().setValueAt("  " + dataNodeCompResults.size(), 2, 1);
-				statsTable.getModel().setValueAt("  " + decFormat.format
-						( dataNodeCompResults.size() * 2.0 / (pwElemComp.getDNcountInPw1() + pwElemComp.getDNcountInPw2()) ) , 3, 1);
+				statistics[0] = "  " + pwElemComp.getDNcountInPw1();
+				statistics[1] = "  " + pwElemComp.getDNcountInPw2();
+				statistics[2] = "  " + dataNodeCompResults.size();
+				statistics[3] = "  " + decFormat.format(Utility.getSimilarityScore(
+						dataNodeCompResults.size(), pwElemComp.getDNcountInPw1(), pwElemComp.getDNcountInPw2()));
 				
 				//interactions comparison
-				statsTable.getModel().setValueAt("  " + interactionsComp.getInteractionsCountInPw1(), 4, 1);
-				statsTable.getModel().setValueAt("  " + interactionsComp.getInteractionsCountInPw2(), 5, 1);
-				statsTable.getModel().setValueAt("  " + interactionCompResults.size(), 6, 1);
-				statsTable.getModel().setValueAt("  " + decFormat.format
-						( interactionCompResults.size() * 2.0 / (interactionsComp.getInteractionsCountInPw1() + interactionsComp.getInteractionsCountInPw2()) ) , 7, 1);
-				
-				ComparisonResults.getStaticInstance().setComparisonResults(dataNodeCompResults, interactionCompResults);
+				statistics[4] = "  " + interactionsComp.getInteractionsCountInPw1();
+				statistics[5] = "  " + interactionsComp.getInteractionsCountInPw2();
+				statistics[6] = "  " + interactionCompResults.size();
+				statistics[7] = "  " + decFormat.format(Utility.getSimilarityScore(interactionCompResults.size(), 
+						interactionsComp.getInteractionsCountInPw1(), interactionsComp.getInteractionsCountInPw2()));
 				
+				metrics.setResultSizes(dataNodeCompResults.size(), manyToManyDNCompResults.size(), interactionCompResults.size());
+				return new ComparisonResults(dataNodeCompResults, manyToManyDNCompResults, interactionCompResults);
+			}
+			
+			/** runs on the EDT, after the comparison */
+			protected void done()
+			{
 				progressKeeper.finished();
-				
-				if(!button_saveResults.isEnabled())
+				//batches which are still pending are covered by finishResults below
+				finished = true;
+				try 
 				{
+					ComparisonResults comparisonResults = get();
+					if(comparisonResults == null)
+					{
+						reportSkippedComparison();
+						return;
+					}
+					
+					//Populating the statistics table with data from comparison results
+					for(int i = 0; i < statistics.length; i++)
+						statsTable.getModel().setValueAt(statistics[i], i, 1);
+					
+					//the 'Save Comparison Results' button saves the results of the comparison which finished last
+					lastComparisonResults = comparisonResults;
 					button_saveResults.setEnabled(true);
+					if(!comparePopup.isClosed())
+						finishResults(comparisonResults);
+					else
+						comparisonMetrics.comparisonFinished(metrics);
+				} catch (ExecutionException e){
+					if(e.getCause() instanceof CancellationException)
+					{
+						Logger.log.info("Pathway comparison cancelled");
+						stopResults("Comparison cancelled");
+						comparisonMetrics.comparisonStopped(metrics, true);
+					}
+					else
+					{
+						stopResults("Comparison failed");
+						comparisonMetrics.comparisonStopped(metrics, false);
+						swingEngine.handleConverterException("Exception during Pathway comparison", null, e.getCause());
+					}
+				} catch (InterruptedException e){
+					stopResults("Comparison cancelled");
+					comparisonMetrics.comparisonStopped(metrics, true);
+					swingEngine.handleConverterException("Pathway comparison was cancelled or interrupted", null, e);
 				}
-				return ComparisonResults.getStaticInstance();
 			}
-		};
-
-		swingWorker.execute();
-		progressDialog.setVisible(true);
-		try 
+		}
+		
+		final CompareWorker compareWorker = new CompareWorker();
+		queueTask(new Runnable() 
 		{
-			ComparisonResults comparisonResults = swingWorker.get();
-			comparePopup.displayPathwayComparisonInNewWindow(PathwaysInfo.getStaticInstance(), comparisonResults);
-			return true;
-		} catch (ExecutionException e){
-			swingEngine.handleConverterException("Exception during Pathway comparison", null, e.getCause());
-			return false;
-		} catch (InterruptedException e){
-			swingEngine.handleConverterException("Pathway comparison was cancelled or interrupted", null, e);
-			return false;
+			public void run() 
+			{
+				//only taking the snapshot waits for the loads, the comparison runs alongside the other tasks
+				compareWorker.takeSnapshotOfLoadedPathways();
+				compareWorker.execute();
+			}
+		}, progressKeeper, "Comparing Pathway", true);
+	}
+	
+	/** matches found by a running comparison, published from the comparison threads to the EDT */
+	private static class ResultsBatch
+	{
+		private final List<List<List<PathwayElement>>> manyToManyDNMatches;
+		private final List<List<Set<PathwayElement>>> interactionMatches;
+		
+		ResultsBatch(List<List<List<PathwayElement>>> manyToManyDNMatches, List<List<Set<PathwayElement>>> interactionMatches)
+		{
+			this.manyToManyDNMatches = manyToManyDNMatches;
+			this.interactionMatches = interactionMatches;
 		}
 	}
 	
 	/**
-	 * custom loading of {@link Pathway} and {@link VPathway} objects from the input GPML file: 
-	 * Constructing a Pathway object from GPML file and then modeling VPathway from this Pathway object. 
+	 * custom loading of a {@link Pathway} object from the input GPML file: 
+	 * Constructing a Pathway object from GPML file and then the {@link PathwayIndex} snapshot of it which is compared. 
+	 * The loading is queued and runs in the background, {@link #pathwayLoaded(byte, File, boolean)} is called once it is done. 
 	 * 
 	 * @param pathwayIndex This index indicates which pathway information (0: Pathway1, 1: Pathway2) to use
 	 * @param pathwayFile This is the gpml/xml pathway file picked through the file-chooser dialog. 
 	 * It is used in constructing the Pathway object.
-	 * 
-	 * @return Returns true if the file chosen from the file-chooser dialog 
-	 * loaded up the Pathway and VPathway objects successfully
 	 */
-	private boolean loadPathway(final byte pathwayIndex, final File pathwayFile) 
+	private void loadPathway(final byte pathwayIndex, final File pathwayFile) 
 	{
-		pathwayArr[pathwayIndex] = new Pathway();
-		vPathwayArr[pathwayIndex] = null;
-		
 		final ProgressKeeper progressKeeper = new ProgressKeeper();
-		final ProgressDialog progressDialog = new ProgressDialog(null,"Comparison plug-in", progressKeeper, false, true);
 		SwingWorker<Boolean, Void> swingWorker = new SwingWorker<Boolean, Void>() 
 		{
-			protected Boolean doInBackground() 
+			protected Boolean doInBackground() throws ConverterException
+			{
+				readPathway(pathwayIndex, pathwayFile);
+				return true;
+			}
+			
+			/** runs on the EDT, after loading */
+			protected void done()
 			{
-				progressKeeper.setTaskName("Loading Pathway");
+				progressKeeper.finished();
+				boolean loadPathwaySuccess = false;
 				try 
 				{
-					pathwayArr[pathwayIndex].readFromXml(pathwayFile, false);
-					VPathwaySwing wrapper = new VPathwaySwing(comparePopup.getjScrollPaneArr()[pathwayIndex]);
-					vPathwayArr[pathwayIndex] = wrapper.createVPathway();
-					vPathwayArr[pathwayIndex].fromModel(pathwayArr[pathwayIndex]);
-					return true;
-					
-				} catch (ConverterException e) {
-					swingEngine.handleConverterException(e.getMessage(), null, e);
-					return false;
-				
-				} finally {
-					progressKeeper.finished();
+					loadPathwaySuccess = get();
+				} catch (ExecutionException e){
+					handleLoadFailure(e.getCause());
+				} catch (InterruptedException e) {
+					swingEngine.handleConverterException("Pathway conversion was cancelled or interrupted", null, e);
 				}
+				pathwayLoaded(pathwayIndex, pathwayFile, loadPathwaySuccess);
 			}
 		};
-
-		swingWorker.execute();
-		progressDialog.setVisible(true);
-		try 
+		queueTask(swingWorker, progressKeeper, "Loading Pathway", false);
+	}
+	
+	/**
+	 * Loads Pathway1 and Pathway2 concurrently, like 2 calls of {@link #loadPathway(byte, File)} which run side by side. 
+	 * The comparison of the pair is queued right behind it; the VPathways are only built when its window opens.
+	 * 
+	 * @param pathwayFiles the gpml/xml files of Pathway1 and Pathway2
+	 */
+	private void loadPathwayPair(final File pathwayFiles[])
+	{
+		final ProgressKeeper progressKeeper = new ProgressKeeper();
+		//the cause of the failure of each pathway, or null if it was loaded
+		SwingWorker<Throwable[], Void> swingWorker = new SwingWorker<Throwable[], Void>() 
 		{
-			return swingWorker.get();
-		} catch (ExecutionException e){
-			swingEngine.handleConverterException("Exception occured during Pathway conversion into GPML", null, e.getCause());
-			return false;
-		} catch (InterruptedException e) {
-			swingEngine.handleConverterException("Pathway conversion was cancelled or interrupted", null, e);
-			return false;
-		}
+			protected Throwable[] doInBackground() throws InterruptedException
+			{
+				List<Future<Void>> futures = new ArrayList<Future<Void>>();
+				for(byte i = 0; i < 2; i++)
+				{
+					final byte pathwayIndex = i;
+					futures.add(pairLoadExecutor.submit(new Callable<Void>() 
+					{
+						public Void call() throws ConverterException
+						{
+							readPathway(pathwayIndex, pathwayFiles[pathwayIndex]);
+							return null;
+						}
+					}));
+				}
+				
+				Throwable failures[] = new Throwable[2];
+				for(int i = 0; i < 2; i++)
+				{
+					try {
+						futures.get(i).get();
+					} catch (ExecutionException e) {
+						failures[i] = e.getCause();
+					}
+				}
+				return failures;
+			}
+			
+			/** runs on the EDT, after loading both pathways */
+			protected void done()
+			{
+				progressKeeper.finished();
+				Throwable failures[];
+				try 
+				{
+					failures = get();
+				} catch (ExecutionException e){
+					failures = new Throwable[] {e.getCause(), e.getCause()};
+				} catch (InterruptedException e) {
+					failures = new Throwable[] {e, e};
+				}
+				for(byte i = 0; i < 2; i++)
+				{
+					//a failure which is common to both pathways is reported only once
+					if(failures[i] != null && (i == 0 || failures[i] != failures[0]))
+						handleLoadFailure(failures[i]);
+					pathwayLoaded(i, pathwayFiles[i], failures[i] == null);
+				}
+			}
+		};
+		queueTask(swingWorker, progressKeeper, "Loading Pathway Pair", false);
+	}
+	
+	/**
+	 * Reads a pathway and builds the {@link PathwayIndex} snapshot of it, for {@link #loadPathway(byte, File)} and 
+	 * {@link #loadPathwayPair(File[])}; the 2 pathways of a pair are read concurrently, each into its own slot.
+	 */
+	private void readPathway(byte pathwayIndex, File pathwayFile) throws ConverterException
+	{
+		pathwayArr[pathwayIndex] = new Pathway();
+		pathwayNameArr[pathwayIndex] = pathwayFile.getName();
+		pathwayIndexArr[pathwayIndex] = null;
+		
+		ComparisonMetrics.Recorder metrics = new ComparisonMetrics.Recorder();
+		long parsingStart = metrics.start();
+		pathwayArr[pathwayIndex].readFromXml(pathwayFile, false);
+		metrics.stop(ComparisonMetrics.Phase.GPML_PARSING, parsingStart);
+		long indexingStart = metrics.start();
+		pathwayIndexArr[pathwayIndex] = new PathwayIndex(pathwayArr[pathwayIndex]);
+		metrics.stop(ComparisonMetrics.Phase.PATHWAY_INDEXING, indexingStart);
+		comparisonMetrics.pathwayLoaded(metrics);
+	}
+	
+	/** reports a pathway which failed to load, on the EDT */
+	private void handleLoadFailure(Throwable cause)
+	{
+		if(cause instanceof ConverterException)
+			swingEngine.handleConverterException(cause.getMessage(), null, cause);
+		else if(cause instanceof InterruptedException)
+			swingEngine.handleConverterException("Pathway conversion was cancelled or interrupted", null, cause);
+		else
+			swingEngine.handleConverterException("Exception occured during Pathway conversion into GPML", null, cause);
 	}
 	
 	/**
@@ -351,8 +853,8 @@ public class ComparePane extends JPanel
 	 */
 	private void handleSaveCompResultsAction()
 	{
-		List<List<List<PathwayElement>>> dnCompResultsParsed = ComparisonResults.getStaticInstance().getDNCompResultsParsed();
-		List<List<Set<PathwayElement>>> interactionCompResults = ComparisonResults.getStaticInstance().getInteractionCompResults();
+		List<List<List<PathwayElement>>> dnCompResultsParsed = lastComparisonResults.getDNCompResultsParsed();
+		List<List<Set<PathwayElement>>> interactionCompResults = lastComparisonResults.getInteractionCompResults();
 		
 		if(dnCompResultsParsed.isEmpty() && interactionCompResults.isEmpty()) 
 		{
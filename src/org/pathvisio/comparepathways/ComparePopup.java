@@ -17,13 +17,13 @@
 package org.pathvisio.comparepathways;
 
 import java.awt.Dimension;
-import java.awt.Frame;
 import java.awt.Toolkit;
 import java.awt.event.ComponentAdapter;
 import java.awt.event.ComponentEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import java.awt.event.MouseListener;
 import java.util.List;
-import java.util.Set;
 
 import javax.swing.BoxLayout;
 import javax.swing.JDesktopPane;
@@ -32,7 +32,9 @@ import javax.swing.JInternalFrame;
 import javax.swing.JScrollPane;
 import javax.swing.JSplitPane;
 
-import org.pathvisio.core.model.PathwayElement;
+import org.pathvisio.core.model.Pathway;
+import org.pathvisio.core.view.VPathway;
+import org.pathvisio.gui.view.VPathwaySwing;
 
 /** 
  * This class has the the Comparison pop-up window code, basically related to its UI layout  
@@ -60,88 +62,108 @@ public class ComparePopup
 	
 	private final JSplitPane pathwaysSplitPane = new JSplitPane(),outerSplitPane = new JSplitPane();
 	private JFrame mainFrame;
+	private boolean closed;
 
+	/**
+	 * Builds the VPathway of one of the 2 pathways in its JScrollPane of this window. 
+	 * Called in the background, before the window is shown; the 2 sides can be built at the same time. 
+	 * The VPathways belong to this window, the Pathways may be shared with other comparisons.
+	 * 
+	 * @param side 0 for Pathway1, 1 for Pathway2
+	 * @param pathway the Pathway to build the VPathway of
+	 */
+	VPathway createVPathway(int side, Pathway pathway)
+	{
+		VPathwaySwing wrapper = new VPathwaySwing(jScrollPaneArr[side]);
+		VPathway vPathway = wrapper.createVPathway();
+		vPathway.fromModel(pathway);
+		return vPathway;
+	}
+	
 	/** Constructs the Frame structure necessary to display the loaded pathways in 'compare-mode' in a pop-up window. 
+	 * Every comparison has a ComparePopup of its own, so this is called once; 
+	 * the comparison results are then added to the "Results" pane while the comparison runs.
 	 * 
 	 * @param pathwaysInfo Pathway and VPatwhay information related to a given pathway is contained inside in PathwaysInfo object
-	 * @param comparisonResults The comparison results which are to be displayed inside the "Results" pane
+	 * @return the "Results" pane in which the comparison results are to be displayed
 	 */
-	void displayPathwayComparisonInNewWindow(PathwaysInfo pathwaysInfo, ComparisonResults comparisonResults) 
+	ResultsPane displayPathwayComparisonInNewWindow(final PathwaysInfo pathwaysInfo) 
 	{
-		if(mainFrame != null) 
+		/*	JFrame's contentPane has DesktopPane as its container -->
+		 *  DesktopPane has an outer JSplitPane component, 
+		 *  This outer SplitPane separates the ResultsPane and the inner JSplitpane (which separates the 2 pathways)  -->
+		 *  The inner JSplitPane has JInternalFrames as its left and right components -->
+		 *  The JInternalFrames have JScrollPanes as their inner component -->
+		 *  The JScrollPanes have VPathway as their inner component*/
+		
+		/*jScrollPane1.getHorizontalScrollBar().addAdjustmentListener(scrollBarAdjustMentListener);
+		jScrollPane1.getVerticalScrollBar().addAdjustmentListener(scrollBarAdjustMentListener);
+		jScrollPane2.getHorizontalScrollBar().addAdjustmentListener(scrollBarAdjustMentListener);
+		jScrollPane2.getVerticalScrollBar().addAdjustmentListener(scrollBarAdjustMentListener);*/
+		
+		//The JInternalFrames have JScrollPanes as their inner component
+		internalFrameArr[0].setSize(INTERNAL_FRAMES_WIDTH,INTERNAL_FRAMES_HEIGHT);
+		internalFrameArr[0].add(jScrollPaneArr[0]);
+		internalFrameArr[0].setVisible(true);
+		//removeMouseListener(internalFrameArr[0]);
+		
+		internalFrameArr[1].setSize(INTERNAL_FRAMES_WIDTH,INTERNAL_FRAMES_HEIGHT);
+		internalFrameArr[1].add(jScrollPaneArr[1]);
+		internalFrameArr[1].setVisible(true);
+		//removeMouseListener(internalFrameArr[1]);
+		
+		//setup inner splitPane which contains both the internal frames containing the pathways
+		pathwaysSplitPane.setLeftComponent(internalFrameArr[0]);
+		pathwaysSplitPane.setRightComponent(internalFrameArr[1]);
+		pathwaysSplitPane.setVisible(true);
+		
+		//Creating ResultsPane in which the comparison results would be shown
+		ResultsPane resultsPane = new ResultsPane();
+		resultsPane.startResults(pathwaysInfo);
+		
+		//setup outer splitPane which separates pathwaySplitpane and resultsPane 
+		outerSplitPane.setLeftComponent(pathwaysSplitPane);
+		outerSplitPane.setRightComponent(resultsPane);
+		outerSplitPane.setVisible(true);
+		
+		//DesktopPane has the outer JSplitPane component
+		JDesktopPane desktopPane = new JDesktopPane();
+		//desktopPane.setSize(OUTER_FRAME_WIDTH, OUTER_FRAME_HEIGHT);
+		desktopPane.setLayout(new BoxLayout(desktopPane, BoxLayout.Y_AXIS));
+		desktopPane.add(outerSplitPane);
+		desktopPane.setVisible(true);
+		
+		//JFrame's contentPane has DesktopPane as its container
+		mainFrame = new JFrame("Pathway Comparison");
+		mainFrame.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
+		mainFrame.addComponentListener(mainFrameResizeListener);
+		mainFrame.addWindowListener(new WindowAdapter() 
 		{
-			//Reset resultsPane and print comparison results on it
-			ResultsPane resultsPane = (ResultsPane) outerSplitPane.getRightComponent();
-			resultsPane.initializePaneAndPrintReults(comparisonResults, pathwaysInfo);
-			adjustSplitPaneDividerPosition();
-			resetScrollBars();
-			
-			/*bringing mainFrame to top and then disabling 'always top' property back to normal*/
-			mainFrame.setAlwaysOnTop(true);
-			mainFrame.setAlwaysOnTop(false);
-			mainFrame.setState(Frame.NORMAL); // maximizes the window if its in a minimized state 
-			
-		} else {
-			
-			/*	JFrame's contentPane has DesktopPane as its container -->
-			 *  DesktopPane has an outer JSplitPane component, 
-			 *  This outer SplitPane separates the ResultsPane and the inner JSplitpane (which separates the 2 pathways)  -->
-			 *  The inner JSplitPane has JInternalFrames as its left and right components -->
-			 *  The JInternalFrames have JScrollPanes as their inner component -->
-			 *  The JScrollPanes have VPathway as their inner component*/
-			
-			/*jScrollPane1.getHorizontalScrollBar().addAdjustmentListener(scrollBarAdjustMentListener);
-			jScrollPane1.getVerticalScrollBar().addAdjustmentListener(scrollBarAdjustMentListener);
-			jScrollPane2.getHorizontalScrollBar().addAdjustmentListener(scrollBarAdjustMentListener);
-			jScrollPane2.getVerticalScrollBar().addAdjustmentListener(scrollBarAdjustMentListener);*/
-			
-			//The JInternalFrames have JScrollPanes as their inner component
-			internalFrameArr[0].setSize(INTERNAL_FRAMES_WIDTH,INTERNAL_FRAMES_HEIGHT);
-			internalFrameArr[0].add(jScrollPaneArr[0]);
-			internalFrameArr[0].setVisible(true);
-			//removeMouseListener(internalFrameArr[0]);
-			
-			internalFrameArr[1].setSize(INTERNAL_FRAMES_WIDTH,INTERNAL_FRAMES_HEIGHT);
-			internalFrameArr[1].add(jScrollPaneArr[1]);
-			internalFrameArr[1].setVisible(true);
-			//removeMouseListener(internalFrameArr[1]);
-			
-			//setup inner splitPane which contains both the internal frames containing the pathways
-			pathwaysSplitPane.setLeftComponent(internalFrameArr[0]);
-			pathwaysSplitPane.setRightComponent(internalFrameArr[1]);
-			pathwaysSplitPane.setVisible(true);
-			
-			//Creating ResultsPane in which the comparison results would be shown
-			ResultsPane resultsPane = new ResultsPane();
-			resultsPane.initializePaneAndPrintReults(comparisonResults, pathwaysInfo);
-			
-			//setup outer splitPane which separates pathwaySplitpane and resultsPane 
-			outerSplitPane.setLeftComponent(pathwaysSplitPane);
-			outerSplitPane.setRightComponent(resultsPane);
-			outerSplitPane.setVisible(true);
-			
-			//DesktopPane has the outer JSplitPane component
-			JDesktopPane desktopPane = new JDesktopPane();
-			//desktopPane.setSize(OUTER_FRAME_WIDTH, OUTER_FRAME_HEIGHT);
-			desktopPane.setLayout(new BoxLayout(desktopPane, BoxLayout.Y_AXIS));
-			desktopPane.add(outerSplitPane);
-			desktopPane.setVisible(true);
-			
-			//JFrame's contentPane has DesktopPane as its container
-			mainFrame = new JFrame("Pathway Comparison");
-			mainFrame.setDefaultCloseOperation(JFrame.HIDE_ON_CLOSE);
-			mainFrame.addComponentListener(mainFrameResizeListener);
-			mainFrame.setContentPane(desktopPane);
-			
-			//place the mainFrame at the center of the screen
-			Dimension screenResolution = Toolkit.getDefaultToolkit().getScreenSize();
-			mainFrame.setBounds(((screenResolution.width - OUTER_FRAME_WIDTH)>>1), ((screenResolution.height - OUTER_FRAME_HEIGHT) >> 1), 
-					OUTER_FRAME_WIDTH, OUTER_FRAME_HEIGHT);
-			adjustSplitPaneDividerPosition();
-			//mainFrame.setVisible(true);
-		}
+			@Override
+			public void windowClosed(WindowEvent e)
+			{
+				//the Pathways may still be shown in other windows, only the VPathways of this one go
+				closed = true;
+				pathwaysInfo.disposeVPathways();
+			}
+		});
+		mainFrame.setContentPane(desktopPane);
+		
+		//place the mainFrame at the center of the screen
+		Dimension screenResolution = Toolkit.getDefaultToolkit().getScreenSize();
+		mainFrame.setBounds(((screenResolution.width - OUTER_FRAME_WIDTH)>>1), ((screenResolution.height - OUTER_FRAME_HEIGHT) >> 1), 
+				OUTER_FRAME_WIDTH, OUTER_FRAME_HEIGHT);
+		adjustSplitPaneDividerPosition();
+		//mainFrame.setVisible(true);
 		
 		mainFrame.setVisible(true);
+		return resultsPane;
+	}
+	
+	/** @return true once the window has been closed by the user */
+	boolean isClosed()
+	{
+		return closed;
 	}
 	
 	// common AdjustmentListener for JScrollPanes which contain pathways
@@ -181,15 +203,6 @@ public class ComparePopup
 		outerSplitPane.setDividerLocation(80 * mainFrame.getWidth() / 100);
 	}
 	
-	/**This resets the horizontal and vertical scrollBars' positions to zero */
-	private void resetScrollBars() 
-	{
-		jScrollPaneArr[0].getHorizontalScrollBar().setValue(0);
-		jScrollPaneArr[1].getHorizontalScrollBar().setValue(0);
-		jScrollPaneArr[0].getVerticalScrollBar().setValue(0);
-		jScrollPaneArr[1].getVerticalScrollBar().setValue(0);
-	}
-	
 	/** This is to block the JInternalFrames' movement inside the split-pane when dragging mouse over it
 	 * @param internalFrame The {@link JInternalFrame} for which to remove the mouse listener*/
     private void removeMouseListener(JInternalFrame internalFrame) 
@@ -0,0 +1,43 @@
+// Pathway Comparison plug-in,
+// a PathVisio plug-in for comparing 2 pathways based on Datanodes and the interaction between Datanodes
+// Copyright 2006-2011 BiGCaT Bioinformatics
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+package org.pathvisio.comparepathways;
+
+import java.util.List;
+import java.util.Set;
+
+import org.pathvisio.core.model.PathwayElement;
+
+/**
+ * Receives the matches found by {@link PathwayElementComparision} and {@link InteractionsComparison} while the comparison runs, 
+ * so that they can be shown before the whole comparison is done. 
+ * The matches are passed on in the same order as they appear in the final results. 
+ * The methods are called from the thread running the comparison.
+ */
+interface ComparisonListener 
+{
+	/**
+	 * @param manyToManyDNMatches the DataNode matches of one DataNodeType, grouped into many-to-many matches 
+	 * (see {@link PathwayElementComparision#groupManyToManyMatches(List)}). 
+	 * As the DataNodes only match DataNodes of their own type, these groups are final.
+	 */
+	void dataNodeMatchesFound(List<List<List<PathwayElement>>> manyToManyDNMatches);
+	
+	/**
+	 * @param interactionMatches the matches of one interaction from Pathway1 with the interactions in Pathway2.
+	 */
+	void interactionMatchesFound(List<List<Set<PathwayElement>>> interactionMatches);
+}
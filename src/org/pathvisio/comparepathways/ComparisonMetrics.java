@@ -0,0 +1,309 @@
+// Pathway Comparison plug-in,
+// a PathVisio plug-in for comparing 2 pathways based on Datanodes and the interaction between Datanodes
+// Copyright 2006-2011 BiGCaT Bioinformatics
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+package org.pathvisio.comparepathways;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.pathvisio.core.debug.Logger;
+
+/**
+ * Timings and counters of the pathway loads and comparisons, published as a JMX MBean 
+ * (see {@link ComparisonMetricsMBean}) so that they can be watched with e.g. jconsole. 
+ * Every load and comparison records its own numbers in a {@link Recorder}, which is added to the totals once it is done; 
+ * the numbers of each comparison can also be written to the log.
+ * <p>
+ * All methods are thread-safe.
+ */
+public class ComparisonMetrics implements ComparisonMetricsMBean 
+{
+	static final String OBJECT_NAME = "org.pathvisio.comparepathways:type=ComparisonMetrics";
+	
+	/** the phases of a load or a comparison which are timed */
+	enum Phase
+	{
+		GPML_PARSING ("GPML parsing"),
+		/** building the {@link PathwayIndex}, which categorizes the DataNodes and lines */
+		PATHWAY_INDEXING ("pathway indexing"),
+		VPATHWAY_CONSTRUCTION ("VPathway construction"),
+		XREF_MAPPING ("Xref mapping"),
+		DATANODE_MATCHING ("DataNode matching"),
+		INTERACTION_EXTRACTION ("interaction extraction"),
+		INTERACTION_MATCHING ("interaction matching"),
+		RESULTS_TABLE ("results table");
+		
+		private final String description;
+		
+		Phase(String description)
+		{
+			this.description = description;
+		}
+	}
+	
+	/**
+	 * Records the timings and counters of a single load or comparison, possibly from several threads at once.
+	 * A phase can be timed more than once, the times add up.
+	 */
+	static class Recorder
+	{
+		private final AtomicLongArray phaseNanos = new AtomicLongArray(Phase.values().length);
+		private final AtomicLong mapIDCalls = new AtomicLong(), mappedXrefs = new AtomicLong();
+		private final AtomicLong dataNodeMatches = new AtomicLong(), manyToManyDataNodeMatches = new AtomicLong(), 
+			interactionMatches = new AtomicLong();
+		private volatile String mappingStatistics;
+		
+		/** @return the start time to pass on to {@link #stop(Phase, long)} */
+		long start()
+		{
+			return System.nanoTime();
+		}
+		
+		/** adds the wall time since startNanos to the given phase */
+		void stop(Phase phase, long startNanos)
+		{
+			phaseNanos.addAndGet(phase.ordinal(), System.nanoTime() - startNanos);
+		}
+		
+		/** @param xrefCount number of Xrefs passed to the IDMapper in one mapID call */
+		void mapIDCalled(int xrefCount)
+		{
+			mapIDCalls.incrementAndGet();
+			mappedXrefs.addAndGet(xrefCount);
+		}
+		
+		/** @param mappingStatistics the cost of the Xref mapping per source DataSource, see {@link TargetDataSourcePlanner#getStatistics()} */
+		void setMappingStatistics(String mappingStatistics)
+		{
+			this.mappingStatistics = mappingStatistics;
+		}
+		
+		void setResultSizes(int dataNodeMatchCount, int manyToManyDataNodeMatchCount, int interactionMatchCount)
+		{
+			dataNodeMatches.set(dataNodeMatchCount);
+			manyToManyDataNodeMatches.set(manyToManyDataNodeMatchCount);
+			interactionMatches.set(interactionMatchCount);
+		}
+		
+		private void addTo(Recorder total)
+		{
+			for(int i = 0; i < phaseNanos.length(); i++)
+				total.phaseNanos.addAndGet(i, phaseNanos.get(i));
+			total.mapIDCalls.addAndGet(mapIDCalls.get());
+			total.mappedXrefs.addAndGet(mappedXrefs.get());
+			total.dataNodeMatches.addAndGet(dataNodeMatches.get());
+			total.manyToManyDataNodeMatches.addAndGet(manyToManyDataNodeMatches.get());
+			total.interactionMatches.addAndGet(interactionMatches.get());
+		}
+		
+		long getMillis(Phase phase)
+		{
+			return TimeUnit.NANOSECONDS.toMillis(phaseNanos.get(phase.ordinal()));
+		}
+		
+		/** @return a single line with the time of each phase that ran, the mapID calls and the result sizes, 
+		 * followed by the Xref mapping statistics if there are any */
+		@Override
+		public String toString()
+		{
+			return getSummary(null);
+		}
+		
+		/** @param outcome how the comparison ended if it did not finish, e.g. "cancelled"; null if it finished */
+		private String getSummary(String outcome)
+		{
+			StringBuilder summary = new StringBuilder(outcome == null ? "Pathway comparison:" : "Pathway comparison (" + outcome + "):");
+			for(Phase phase : Phase.values())
+			{
+				if(phaseNanos.get(phase.ordinal()) > 0)
+					summary.append(" " + phase.description + " " + getMillis(phase) + " ms,");
+			}
+			summary.append(" " + mapIDCalls.get() + " mapID calls for " + mappedXrefs.get() + " Xrefs, ");
+			summary.append(dataNodeMatches.get() + " DataNode matches (" + manyToManyDataNodeMatches.get() + " many-to-many), ");
+			summary.append(interactionMatches.get() + " interaction matches");
+			if(mappingStatistics != null)
+				summary.append("\n" + mappingStatistics);
+			return summary.toString();
+		}
+	}
+	
+	private final boolean logComparisonSummaries;
+	private volatile Recorder total = new Recorder();
+	private final AtomicInteger pathwayLoadCount = new AtomicInteger(), comparisonCount = new AtomicInteger(), 
+		cancelledComparisonCount = new AtomicInteger(), failedComparisonCount = new AtomicInteger();
+	private volatile String lastComparisonSummary = "";
+	
+	/** @param logComparisonSummaries if true, the timings and counters of every comparison are written to the log */
+	ComparisonMetrics(boolean logComparisonSummaries)
+	{
+		this.logComparisonSummaries = logComparisonSummaries;
+	}
+	
+	/** adds the numbers of a pathway load to the totals */
+	void pathwayLoaded(Recorder recorder)
+	{
+		pathwayLoadCount.incrementAndGet();
+		recorder.addTo(total);
+	}
+	
+	/** adds the numbers of a finished comparison to the totals, and logs them if enabled */
+	void comparisonFinished(Recorder recorder)
+	{
+		comparisonCount.incrementAndGet();
+		recorder.addTo(total);
+		lastComparisonSummary = recorder.toString();
+		if(logComparisonSummaries)
+			Logger.log.info(lastComparisonSummary);
+	}
+	
+	/** 
+	 * adds the numbers of a comparison which was cancelled or failed to the totals, and logs them if enabled: 
+	 * the phases it got through (e.g. a slow or failing Xref mapping) count as much as those of a finished comparison.
+	 */
+	void comparisonStopped(Recorder recorder, boolean cancelled)
+	{
+		(cancelled ? cancelledComparisonCount : failedComparisonCount).incrementAndGet();
+		recorder.addTo(total);
+		lastComparisonSummary = recorder.getSummary(cancelled ? "cancelled" : "failed");
+		if(logComparisonSummaries)
+			Logger.log.info(lastComparisonSummary);
+	}
+	
+	/** registers this MBean with the platform MBeanServer; a failure is only logged */
+	void register()
+	{
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+		} catch (JMException e) {
+			Logger.log.error("Unable to register the pathway comparison metrics MBean", e);
+		}
+	}
+	
+	void unregister()
+	{
+		MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+		try {
+			ObjectName objectName = new ObjectName(OBJECT_NAME);
+			if(mBeanServer.isRegistered(objectName))
+				mBeanServer.unregisterMBean(objectName);
+		} catch (JMException e) {
+			Logger.log.error("Unable to unregister the pathway comparison metrics MBean", e);
+		}
+	}
+	
+	public int getPathwayLoadCount()
+	{
+		return pathwayLoadCount.get();
+	}
+	
+	public int getComparisonCount()
+	{
+		return comparisonCount.get();
+	}
+	
+	public int getCancelledComparisonCount()
+	{
+		return cancelledComparisonCount.get();
+	}
+	
+	public int getFailedComparisonCount()
+	{
+		return failedComparisonCount.get();
+	}
+	
+	public long getGpmlParsingMillis()
+	{
+		return total.getMillis(Phase.GPML_PARSING);
+	}
+	
+	public long getPathwayIndexingMillis()
+	{
+		return total.getMillis(Phase.PATHWAY_INDEXING);
+	}
+	
+	public long getVPathwayConstructionMillis()
+	{
+		return total.getMillis(Phase.VPATHWAY_CONSTRUCTION);
+	}
+	
+	public long getXrefMappingMillis()
+	{
+		return total.getMillis(Phase.XREF_MAPPING);
+	}
+	
+	public long getDataNodeMatchingMillis()
+	{
+		return total.getMillis(Phase.DATANODE_MATCHING);
+	}
+	
+	public long getInteractionExtractionMillis()
+	{
+		return total.getMillis(Phase.INTERACTION_EXTRACTION);
+	}
+	
+	public long getInteractionMatchingMillis()
+	{
+		return total.getMillis(Phase.INTERACTION_MATCHING);
+	}
+	
+	public long getResultsTableMillis()
+	{
+		return total.getMillis(Phase.RESULTS_TABLE);
+	}
+	
+	public long getMapIDCallCount()
+	{
+		return total.mapIDCalls.get();
+	}
+	
+	public long getMappedXrefCount()
+	{
+		return total.mappedXrefs.get();
+	}
+	
+	public long getDataNodeMatchCount()
+	{
+		return total.dataNodeMatches.get();
+	}
+	
+	public long getInteractionMatchCount()
+	{
+		return total.interactionMatches.get();
+	}
+	
+	public String getLastComparisonSummary()
+	{
+		return lastComparisonSummary;
+	}
+	
+	public void reset()
+	{
+		//a load or comparison finishing at the same time may end up in either the old or the new totals
+		total = new Recorder();
+		pathwayLoadCount.set(0);
+		comparisonCount.set(0);
+		cancelledComparisonCount.set(0);
+		failedComparisonCount.set(0);
+		lastComparisonSummary = "";
+	}
+}
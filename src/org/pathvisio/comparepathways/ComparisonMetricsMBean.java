@@ -0,0 +1,51 @@
+// Pathway Comparison plug-in,
+// a PathVisio plug-in for comparing 2 pathways based on Datanodes and the interaction between Datanodes
+// Copyright 2006-2011 BiGCaT Bioinformatics
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+package org.pathvisio.comparepathways;
+
+/**
+ * JMX management interface of {@link ComparisonMetrics}: the wall time spent in each phase of the pathway 
+ * loads and comparisons, the number of IDMapper.mapID calls and the size of the results, 
+ * accumulated since the plug-in was loaded (or since the last {@link #reset()}).
+ */
+public interface ComparisonMetricsMBean 
+{
+	int getPathwayLoadCount();
+	int getComparisonCount();
+	int getCancelledComparisonCount();
+	int getFailedComparisonCount();
+	
+	long getGpmlParsingMillis();
+	long getPathwayIndexingMillis();
+	long getVPathwayConstructionMillis();
+	long getXrefMappingMillis();
+	long getDataNodeMatchingMillis();
+	long getInteractionExtractionMillis();
+	long getInteractionMatchingMillis();
+	long getResultsTableMillis();
+	
+	long getMapIDCallCount();
+	long getMappedXrefCount();
+	long getDataNodeMatchCount();
+	long getInteractionMatchCount();
+	
+	/** @return the timings and counters of the comparison which ended last (finished, cancelled or failed), 
+	 * in the format in which they are logged */
+	String getLastComparisonSummary();
+	
+	/** sets all the timings and counters back to zero */
+	void reset();
+}
@@ -0,0 +1,51 @@
+// Pathway Comparison plug-in,
+// a PathVisio plug-in for comparing 2 pathways based on Datanodes and the interaction between Datanodes
+// Copyright 2006-2011 BiGCaT Bioinformatics
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+package org.pathvisio.comparepathways;
+
+import org.pathvisio.core.preferences.Preference;
+
+/**
+ * Preferences of the Pathway Comparison plug-in, stored along with the other PathVisio preferences.
+ */
+enum ComparisonPreference implements Preference
+{
+	/** maximum number of Xref mappings kept in the mapping cache */
+	MAPPING_CACHE_SIZE ("50000"),
+	/** if true, the mapping cache is written to disk when PathVisio exits and read back on the next start */
+	MAPPING_CACHE_PERSISTENT ("true"),
+	/** number of threads on which the parts of a comparison run in parallel, 0 means one per processor and 1 disables it */
+	COMPARISON_THREADS ("0"),
+	/** if true, the time spent in each phase of a comparison, the mapID calls and the result sizes are logged after every comparison */
+	LOG_COMPARISON_METRICS ("false"),
+	/** mapping file (tab separated or binary dump, see InMemoryIDMapper) used along with the gdb, empty for none */
+	MAPPING_FILE (""),
+	/** system code of the DataSource to which the Xrefs of both pathways are mapped before matching, empty to map Pathway1 to Pathway2 */
+	PIVOT_DATASOURCE ("");
+	
+	private final String defaultValue;
+	
+	ComparisonPreference(String defaultValue)
+	{
+		this.defaultValue = defaultValue;
+	}
+	
+	@Override
+	public String getDefault()
+	{
+		return defaultValue;
+	}
+}
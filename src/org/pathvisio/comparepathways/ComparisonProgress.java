@@ -0,0 +1,102 @@
+// Pathway Comparison plug-in,
+// a PathVisio plug-in for comparing 2 pathways based on Datanodes and the interaction between Datanodes
+// Copyright 2006-2011 BiGCaT Bioinformatics
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+package org.pathvisio.comparepathways;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.pathvisio.core.util.ProgressKeeper;
+
+/**
+ * Reports the progress of one phase of a comparison (e.g. mapping the Xrefs) to a {@link ProgressKeeper}, 
+ * as a part of the keeper's progress bar between 2 percentages. 
+ * It also checks whether the user cancelled the comparison: the comparison engines call {@link #worked(int)} 
+ * (or {@link #checkCancelled()}) regularly and it throws a {@link CancellationException} once the keeper is cancelled. 
+ * The work may be reported from several threads at once.
+ */
+class ComparisonProgress 
+{
+	/** does not report anything and is never cancelled, for comparisons run without a ProgressKeeper */
+	static final ComparisonProgress NONE = new ComparisonProgress(null, null, 0, 0);
+	
+	private final ProgressKeeper progressKeeper;
+	private final String taskName;
+	private final int fromPercent, toPercent;
+	private final AtomicInteger totalWork = new AtomicInteger(), workDone = new AtomicInteger(), 
+		lastReportedPercent = new AtomicInteger();
+	
+	/**
+	 * @param progressKeeper keeper with a total work of 100, can be null.
+	 * @param taskName shown in the progress dialog while this phase runs.
+	 * @param fromPercent the progress at the start of this phase.
+	 * @param toPercent the progress once this phase is done.
+	 */
+	ComparisonProgress(ProgressKeeper progressKeeper, String taskName, int fromPercent, int toPercent)
+	{
+		this.progressKeeper = progressKeeper;
+		this.taskName = taskName;
+		this.fromPercent = fromPercent;
+		this.toPercent = toPercent;
+		lastReportedPercent.set(fromPercent);
+	}
+	
+	/**
+	 * Marks the start of this phase.
+	 * @param work the amount of work (e.g. the number of Xrefs) to be done in this phase, more can be added later on.
+	 */
+	void start(int work)
+	{
+		checkCancelled();
+		if(progressKeeper != null)
+			progressKeeper.setTaskName(taskName);
+		addTotalWork(work);
+	}
+	
+	void addTotalWork(int work)
+	{
+		totalWork.addAndGet(work);
+	}
+	
+	/**
+	 * Reports some of the work as done. 
+	 * @throws CancellationException if the comparison has been cancelled.
+	 */
+	void worked(int work)
+	{
+		checkCancelled();
+		if(progressKeeper == null)
+			return;
+		int total = totalWork.get();
+		int done = workDone.addAndGet(work);
+		if(total <= 0)
+			return;
+		int percent = fromPercent + (int) ((long) (toPercent - fromPercent) * Math.min(done, total) / total);
+		//the progress bar never goes back, even if more work is added later on
+		int lastPercent = lastReportedPercent.get();
+		if(percent > lastPercent && lastReportedPercent.compareAndSet(lastPercent, percent))
+			progressKeeper.setProgress(percent);
+	}
+	
+	/**
+	 * @throws CancellationException if the comparison has been cancelled.
+	 */
+	void checkCancelled()
+	{
+		if(progressKeeper != null && progressKeeper.isCancelled())
+			throw new CancellationException("Pathway comparison was cancelled");
+	}
+}
@@ -0,0 +1,207 @@
+// Pathway Comparison plug-in,
+// a PathVisio plug-in for comparing 2 pathways based on Datanodes and the interaction between Datanodes
+// Copyright 2006-2011 BiGCaT Bioinformatics
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+package org.pathvisio.comparepathways;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.bridgedb.DataSource;
+import org.pathvisio.core.model.ConverterException;
+import org.pathvisio.core.model.ObjectType;
+import org.pathvisio.core.model.Pathway;
+import org.pathvisio.core.model.PathwayElement;
+import org.pathvisio.core.model.PathwayElement.MAnchor;
+
+/**
+ * Streaming (StAX) reader for GPML files which reads only what the comparison needs, in a single pass over the XML: 
+ * the DataNodes (type, label, Xref, GraphId and GroupRef), the Groups, and the lines (Interactions and GraphicalLines) 
+ * with the GraphRefs of their first and last points and their anchors. 
+ * Everything else (the graphics, comments, literature references ...) is skipped without being parsed into objects.
+ * <p>
+ * The result is a minimal {@link Pathway} of just these elements, on which the comparison engines and {@link PathwayIndex} 
+ * work as on a fully read one. As the elements have no graphics, it is only meant for the headless comparisons 
+ * (e.g. {@link BatchComparison}); pathways to be displayed have to be read with {@link Pathway#readFromXml(File, boolean)}.
+ */
+public final class GpmlStreamReader 
+{
+	private GpmlStreamReader()
+	{
+	}
+	
+	/**
+	 * Reads the comparison-relevant elements of a GPML file.
+	 * @throws ConverterException if the file can not be read or is not well-formed XML
+	 */
+	public static Pathway read(File file) throws ConverterException
+	{
+		try {
+			InputStream input = new BufferedInputStream(new FileInputStream(file));
+			try {
+				Pathway pathway = read(input);
+				pathway.setSourceFile(file);
+				return pathway;
+			} finally {
+				input.close();
+			}
+		} catch (IOException e) {
+			throw new ConverterException(e);
+		}
+	}
+	
+	/**
+	 * Reads the comparison-relevant elements of a GPML document.
+	 * @throws ConverterException if the document is not well-formed XML
+	 */
+	public static Pathway read(InputStream input) throws ConverterException
+	{
+		Pathway pathway = new Pathway();
+		try {
+			XMLInputFactory xmlInputFactory = XMLInputFactory.newInstance();
+			//GPML does not use DTDs, they are not to be fetched over the network either
+			xmlInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+			XMLStreamReader reader = xmlInputFactory.createXMLStreamReader(input);
+			try {
+				readElements(reader, pathway);
+			} finally {
+				reader.close();
+			}
+		} catch (XMLStreamException e) {
+			throw new ConverterException(e);
+		}
+		return pathway;
+	}
+	
+	private static void readElements(XMLStreamReader reader, Pathway pathway) throws XMLStreamException
+	{
+		PathwayElement dataNode = null, line = null;
+		String startGraphRef = null, endGraphRef = null;
+		boolean firstPoint = false;
+		List<String> anchorGraphIds = new ArrayList<String>();
+		List<Double> anchorPositions = new ArrayList<Double>();
+		
+		while(reader.hasNext())
+		{
+			int event = reader.next();
+			if(event == XMLStreamConstants.START_ELEMENT)
+			{
+				String name = reader.getLocalName();
+				if(name.equals("DataNode"))
+				{
+					dataNode = PathwayElement.createPathwayElement(ObjectType.DATANODE);
+					dataNode.setGraphId(reader.getAttributeValue(null, "GraphId"));
+					dataNode.setTextLabel(getAttribute(reader, "TextLabel"));
+					dataNode.setGroupRef(reader.getAttributeValue(null, "GroupRef"));
+					String type = reader.getAttributeValue(null, "Type");
+					if(type != null)
+						dataNode.setDataNodeType(type);
+				}
+				else if(name.equals("Xref") && dataNode != null)
+				{
+					dataNode.setElementID(getAttribute(reader, "ID"));
+					dataNode.setDataSource(getDataSource(reader.getAttributeValue(null, "Database")));
+				}
+				else if(name.equals("Interaction") || name.equals("GraphicalLine") || name.equals("Line"))
+				{
+					line = PathwayElement.createPathwayElement(name.equals("GraphicalLine") ? ObjectType.GRAPHLINE : ObjectType.LINE);
+					line.setGraphId(reader.getAttributeValue(null, "GraphId"));
+					line.setGroupRef(reader.getAttributeValue(null, "GroupRef"));
+					startGraphRef = endGraphRef = null;
+					firstPoint = true;
+				}
+				else if(name.equals("Point") && line != null)
+				{
+					//only the first and the last points of a line take part in the comparison
+					String graphRef = reader.getAttributeValue(null, "GraphRef");
+					if(firstPoint)
+						startGraphRef = graphRef;
+					endGraphRef = graphRef;
+					firstPoint = false;
+				}
+				else if(name.equals("Anchor") && line != null)
+				{
+					String position = reader.getAttributeValue(null, "Position");
+					anchorPositions.add(position != null ? Double.parseDouble(position) : 0.5);
+					anchorGraphIds.add(reader.getAttributeValue(null, "GraphId"));
+				}
+				else if(name.equals("Group"))
+				{
+					PathwayElement group = PathwayElement.createPathwayElement(ObjectType.GROUP);
+					group.setGroupId(reader.getAttributeValue(null, "GroupId"));
+					group.setGraphId(reader.getAttributeValue(null, "GraphId"));
+					group.setGroupRef(reader.getAttributeValue(null, "GroupRef"));
+					pathway.add(group);
+				}
+				else if(name.equals("Pathway"))
+					pathway.getMappInfo().setMapInfoName(getAttribute(reader, "Name"));
+			}
+			else if(event == XMLStreamConstants.END_ELEMENT)
+			{
+				String name = reader.getLocalName();
+				if(name.equals("DataNode") && dataNode != null)
+				{
+					pathway.add(dataNode);
+					dataNode = null;
+				}
+				else if((name.equals("Interaction") || name.equals("GraphicalLine") || name.equals("Line")) && line != null)
+				{
+					line.setStartGraphRef(startGraphRef);
+					line.setEndGraphRef(endGraphRef);
+					//the line is added first, so that the GraphIds of its anchors are registered with the pathway
+					pathway.add(line);
+					for(int i = 0; i < anchorGraphIds.size(); i++)
+					{
+						MAnchor anchor = line.addMAnchor(anchorPositions.get(i));
+						if(anchorGraphIds.get(i) != null)
+							anchor.setGraphId(anchorGraphIds.get(i));
+					}
+					anchorGraphIds.clear();
+					anchorPositions.clear();
+					line = null;
+				}
+			}
+		}
+	}
+	
+	/** @return the value of the attribute, an empty string if it is missing (as for a fully read pathway) */
+	private static String getAttribute(XMLStreamReader reader, String attributeName)
+	{
+		String value = reader.getAttributeValue(null, attributeName);
+		return value != null ? value : "";
+	}
+	
+	/** @return the DataSource with this full name or system code, the way the GPML reader of PathVisio looks it up; null if there is none */
+	private static DataSource getDataSource(String database)
+	{
+		if(database == null || database.length() == 0)
+			return null;
+		if(DataSource.fullNameExists(database))
+			return DataSource.getByFullName(database);
+		if(DataSource.systemCodeExists(database))
+			return DataSource.getBySystemCode(database);
+		return DataSource.getByFullName(database);
+	}
+}
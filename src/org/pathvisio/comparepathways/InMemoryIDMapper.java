@@ -0,0 +1,386 @@
+// Pathway Comparison plug-in,
+// a PathVisio plug-in for comparing 2 pathways based on Datanodes and the interaction between Datanodes
+// Copyright 2006-2011 BiGCaT Bioinformatics
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+package org.pathvisio.comparepathways;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.bridgedb.AbstractIDMapperCapabilities;
+import org.bridgedb.BridgeDb;
+import org.bridgedb.DataSource;
+import org.bridgedb.Driver;
+import org.bridgedb.IDMapper;
+import org.bridgedb.IDMapperCapabilities;
+import org.bridgedb.IDMapperException;
+import org.bridgedb.Xref;
+
+/**
+ * IDMapper of which all the mappings are held in memory, as an alternative (or an addition, in an IDMapperStack) 
+ * to a Derby gdb: for fast production use with a mapping dump, and for offline tests with e.g. the pathways 
+ * of the {@link SyntheticPathwayGenerator}. 
+ * <p>
+ * The Xrefs are dictionary encoded into int codes (see {@link XrefDictionary}), and the mappings of all the Xrefs 
+ * are kept in 2 int arrays (the mapped Xrefs of Xref i are mappedXrefs[mappingStarts[i]] to mappedXrefs[mappingStarts[i + 1] - 1]). 
+ * Like a gdb, every known Xref maps onto itself; the mappings are not transitive. 
+ * The mapper is immutable, so it can be used from any number of threads without synchronization.
+ * <p>
+ * The mappings are read from a tab separated file, each line holding the system code and id of an Xref 
+ * followed by those of an Xref it maps onto (as written by the {@link SyntheticPathwayGenerator}), 
+ * or from a binary dump written by {@link #writeBinary(File)}, which loads much faster. 
+ * Once {@link #registerDriver()} has been called, they can also be connected to through BridgeDb, 
+ * with the connection string "idmapper-mappingfile:&lt;file&gt;".
+ */
+public final class InMemoryIDMapper implements IDMapper 
+{
+	static final String DRIVER_PREFIX = "idmapper-mappingfile";
+	private static final int BINARY_FORMAT_MAGIC = 0x50434d46;
+	private static final int BINARY_FORMAT_VERSION = 1;
+	private static final String COMMENT_PREFIX = "#";
+	
+	private final XrefDictionary dictionary;
+	private final int[] mappingStarts, mappedXrefs;
+	private final IDMapperCapabilities capabilities;
+	private volatile boolean connected = true;
+	
+	private InMemoryIDMapper(XrefDictionary dictionary, int[] mappingStarts, int[] mappedXrefs, String source)
+	{
+		this.dictionary = dictionary;
+		this.mappingStarts = mappingStarts;
+		this.mappedXrefs = mappedXrefs;
+		
+		Set<DataSource> dataSources = new HashSet<DataSource>();
+		for(int i = 0; i < dictionary.getDataSourceCount(); i++)
+			dataSources.add(dictionary.getDataSource(i));
+		//the XrefMappingCache tells IDMappers apart by their properties, the content hash keeps 2 different mappers apart
+		Map<String, String> properties = new HashMap<String, String>();
+		properties.put("source", source);
+		properties.put("xrefs", String.valueOf(dictionary.size()));
+		properties.put("mappings", String.valueOf(mappedXrefs.length));
+		properties.put("contentHash", Long.toHexString(getContentHash()));
+		capabilities = new AbstractIDMapperCapabilities(dataSources, false, properties) {};
+	}
+	
+	/**
+	 * @param mappings pairs of Xrefs which map onto each other, in both directions.
+	 * @throws IllegalArgumentException if one of the Xrefs has no DataSource
+	 */
+	public static InMemoryIDMapper fromMappings(Collection<Xref[]> mappings)
+	{
+		XrefDictionary dictionary = new XrefDictionary();
+		int[] mappingPairs = new int[2 * mappings.size()];
+		int i = 0;
+		for(Xref[] mapping : mappings)
+		{
+			if(mapping[0].getDataSource() == null || mapping[1].getDataSource() == null)
+				throw new IllegalArgumentException("Mapping " + mapping[0] + " - " + mapping[1] + " has an Xref without a DataSource");
+			mappingPairs[i++] = dictionary.add(mapping[0].getDataSource(), mapping[0].getId());
+			mappingPairs[i++] = dictionary.add(mapping[1].getDataSource(), mapping[1].getId());
+		}
+		return fromMappingPairs(dictionary, mappingPairs, mappingPairs.length, "memory");
+	}
+	
+	/**
+	 * Lays out the mappings given as pairs of Xref codes in the mappingStarts and mappedXrefs arrays: 
+	 * counts the mappings of every Xref, fills them in, then sorts them and removes the duplicates.
+	 */
+	private static InMemoryIDMapper fromMappingPairs(XrefDictionary dictionary, int[] mappingPairs, int length, String source)
+	{
+		int xrefCount = dictionary.size();
+		int[] mappingStarts = new int[xrefCount + 1];
+		for(int i = 0; i < length; i += 2)
+		{
+			if(mappingPairs[i] == mappingPairs[i + 1]) //every Xref maps onto itself anyway
+				continue;
+			mappingStarts[mappingPairs[i] + 1]++;
+			mappingStarts[mappingPairs[i + 1] + 1]++;
+		}
+		for(int i = 0; i < xrefCount; i++)
+			mappingStarts[i + 1] += mappingStarts[i];
+		
+		int[] mappedXrefs = new int[mappingStarts[xrefCount]];
+		int[] nextFree = Arrays.copyOf(mappingStarts, xrefCount);
+		for(int i = 0; i < length; i += 2)
+		{
+			if(mappingPairs[i] == mappingPairs[i + 1])
+				continue;
+			mappedXrefs[nextFree[mappingPairs[i]]++] = mappingPairs[i + 1];
+			mappedXrefs[nextFree[mappingPairs[i + 1]]++] = mappingPairs[i];
+		}
+		
+		//a mapping can be listed more than once (e.g. in both directions), the duplicates are squeezed out
+		int[] compactedStarts = new int[xrefCount + 1];
+		int compactedLength = 0;
+		for(int i = 0; i < xrefCount; i++)
+		{
+			compactedStarts[i] = compactedLength;
+			Arrays.sort(mappedXrefs, mappingStarts[i], mappingStarts[i + 1]);
+			for(int j = mappingStarts[i]; j < mappingStarts[i + 1]; j++)
+			{
+				if(j == mappingStarts[i] || mappedXrefs[j] != mappedXrefs[j - 1])
+					mappedXrefs[compactedLength++] = mappedXrefs[j];
+			}
+		}
+		compactedStarts[xrefCount] = compactedLength;
+		return new InMemoryIDMapper(dictionary, compactedStarts, Arrays.copyOf(mappedXrefs, compactedLength), source);
+	}
+	
+	/**
+	 * Reads a mapping file, either a binary dump or a tab separated file.
+	 */
+	public static InMemoryIDMapper read(File file) throws IOException
+	{
+		DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		try {
+			if(file.length() >= 4 && input.readInt() == BINARY_FORMAT_MAGIC)
+				return readBinary(input, file.getAbsolutePath());
+		} finally {
+			input.close();
+		}
+		return readTsv(file);
+	}
+	
+	/**
+	 * Reads a tab separated mapping file: every line holds the system code and id of an Xref, followed by 
+	 * the system code and id of an Xref it maps onto. A DataSource without a system code is given by its full name. Empty lines and lines starting with '#' are skipped.
+	 */
+	public static InMemoryIDMapper readTsv(File file) throws IOException
+	{
+		XrefDictionary dictionary = new XrefDictionary();
+		int[] mappingPairs = new int[1024];
+		int length = 0;
+		BufferedReader reader = new BufferedReader(new FileReader(file));
+		try {
+			String line;
+			int lineNumber = 0;
+			while((line = reader.readLine()) != null)
+			{
+				lineNumber++;
+				if(line.trim().length() == 0 || line.startsWith(COMMENT_PREFIX))
+					continue;
+				String fields[] = line.split("\t");
+				if(fields.length < 4)
+					throw new IOException(file + ", line " + lineNumber + ": expected 4 tab separated fields, found " + fields.length);
+				if(length + 2 > mappingPairs.length)
+					mappingPairs = Arrays.copyOf(mappingPairs, 2 * mappingPairs.length);
+				mappingPairs[length++] = dictionary.add(Utility.getDataSourceByKey(fields[0]), fields[1]);
+				mappingPairs[length++] = dictionary.add(Utility.getDataSourceByKey(fields[2]), fields[3]);
+			}
+		} finally {
+			reader.close();
+		}
+		return fromMappingPairs(dictionary, mappingPairs, length, file.getAbsolutePath());
+	}
+	
+	/**
+	 * Reads the binary dump which follows the magic number: the system codes (or full names) of the DataSources, 
+	 * the DataSource code and id of every Xref in the order of their codes, then the mappingStarts and mappedXrefs arrays.
+	 */
+	private static InMemoryIDMapper readBinary(DataInputStream input, String source) throws IOException
+	{
+		int version = input.readInt();
+		if(version != BINARY_FORMAT_VERSION)
+			throw new IOException("Unsupported version " + version + " of the binary mapping format in " + source);
+		DataSource[] dataSources = new DataSource[input.readInt()];
+		for(int i = 0; i < dataSources.length; i++)
+			dataSources[i] = Utility.getDataSourceByKey(input.readUTF());
+		
+		XrefDictionary dictionary = new XrefDictionary();
+		int xrefCount = input.readInt();
+		for(int i = 0; i < xrefCount; i++)
+		{
+			DataSource dataSource = dataSources[input.readShort()];
+			if(dictionary.add(dataSource, input.readUTF()) != i)
+				throw new IOException("Duplicate Xref " + i + " in " + source);
+		}
+		int[] mappingStarts = readInts(input, xrefCount + 1);
+		int[] mappedXrefs = readInts(input, input.readInt());
+		return new InMemoryIDMapper(dictionary, mappingStarts, mappedXrefs, source);
+	}
+	
+	private static int[] readInts(DataInputStream input, int length) throws IOException
+	{
+		int[] ints = new int[length];
+		for(int i = 0; i < length; i++)
+			ints[i] = input.readInt();
+		return ints;
+	}
+	
+	/**
+	 * Writes the mappings as a binary dump, which {@link #read(File)} loads without having to parse the Xrefs 
+	 * or lay out the mappings again.
+	 */
+	public void writeBinary(File file) throws IOException
+	{
+		DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+		try {
+			output.writeInt(BINARY_FORMAT_MAGIC);
+			output.writeInt(BINARY_FORMAT_VERSION);
+			output.writeInt(dictionary.getDataSourceCount());
+			for(int i = 0; i < dictionary.getDataSourceCount(); i++)
+				output.writeUTF(Utility.getDataSourceKey(dictionary.getDataSource(i)));
+			output.writeInt(dictionary.size());
+			for(int i = 0; i < dictionary.size(); i++)
+			{
+				output.writeShort(dictionary.getXrefDataSourceCode(i));
+				output.writeUTF(dictionary.getXref(i).getId());
+			}
+			for(int mappingStart : mappingStarts)
+				output.writeInt(mappingStart);
+			output.writeInt(mappedXrefs.length);
+			for(int mappedXref : mappedXrefs)
+				output.writeInt(mappedXref);
+		} finally {
+			output.close();
+		}
+	}
+	
+	/**
+	 * Registers the "idmapper-mappingfile" driver with BridgeDb, so that mapping files can be connected to 
+	 * like any other BridgeDb database (e.g. added to the IDMapperStack of the GdbManager). 
+	 */
+	public static void registerDriver()
+	{
+		BridgeDb.register(DRIVER_PREFIX, new Driver() 
+		{
+			public IDMapper connect(String location) throws IDMapperException 
+			{
+				try {
+					return read(new File(location));
+				} catch (IOException e) {
+					throw new IDMapperException("Unable to read the mapping file " + location, e);
+				}
+			}
+		});
+	}
+	
+	/** FNV-1a hash over the Xrefs and their mappings */
+	private long getContentHash()
+	{
+		long hash = 0xcbf29ce484222325L;
+		for(int i = 0; i < dictionary.size(); i++)
+		{
+			hash = (hash ^ dictionary.getXref(i).getId().hashCode() ^ dictionary.getXrefDataSourceCode(i)) * 0x100000001b3L;
+			for(int j = mappingStarts[i]; j < mappingStarts[i + 1]; j++)
+				hash = (hash ^ mappedXrefs[j]) * 0x100000001b3L;
+		}
+		return hash;
+	}
+	
+	/** @return the Xrefs of the target DataSources onto which the Xref with the given code maps, added to the result */
+	private void addMappedXrefs(int code, boolean[] targetDataSourceCodes, Set<Xref> result)
+	{
+		if(targetDataSourceCodes[dictionary.getXrefDataSourceCode(code)])
+			result.add(dictionary.getXref(code));
+		for(int i = mappingStarts[code]; i < mappingStarts[code + 1]; i++)
+		{
+			if(targetDataSourceCodes[dictionary.getXrefDataSourceCode(mappedXrefs[i])])
+				result.add(dictionary.getXref(mappedXrefs[i]));
+		}
+	}
+	
+	/** @return for every DataSource code, whether it is one of the target DataSources (all of them if there are none) */
+	private boolean[] getTargetDataSourceCodes(DataSource... tgtDataSources)
+	{
+		boolean[] targetDataSourceCodes = new boolean[dictionary.getDataSourceCount()];
+		if(tgtDataSources == null || tgtDataSources.length == 0)
+			Arrays.fill(targetDataSourceCodes, true);
+		else
+		{
+			for(DataSource tgtDataSource : tgtDataSources)
+			{
+				int dataSourceCode = dictionary.getDataSourceCode(tgtDataSource);
+				if(dataSourceCode != -1)
+					targetDataSourceCodes[dataSourceCode] = true;
+			}
+		}
+		return targetDataSourceCodes;
+	}
+	
+	public Map<Xref, Set<Xref>> mapID(Collection<Xref> srcXrefs, DataSource... tgtDataSources)
+	{
+		boolean[] targetDataSourceCodes = getTargetDataSourceCodes(tgtDataSources);
+		Map<Xref, Set<Xref>> result = new HashMap<Xref, Set<Xref>>();
+		for(Xref srcXref : srcXrefs)
+		{
+			int code = dictionary.getCode(srcXref);
+			if(code == -1)
+				continue;
+			Set<Xref> mappedXrefsOfSrc = new LinkedHashSet<Xref>();
+			addMappedXrefs(code, targetDataSourceCodes, mappedXrefsOfSrc);
+			if(!mappedXrefsOfSrc.isEmpty())
+				result.put(srcXref, mappedXrefsOfSrc);
+		}
+		return result;
+	}
+	
+	public Set<Xref> mapID(Xref ref, DataSource... tgtDataSources)
+	{
+		int code = dictionary.getCode(ref);
+		if(code == -1)
+			return Collections.emptySet();
+		Set<Xref> result = new LinkedHashSet<Xref>();
+		addMappedXrefs(code, getTargetDataSourceCodes(tgtDataSources), result);
+		return result;
+	}
+	
+	public boolean xrefExists(Xref xref)
+	{
+		return dictionary.getCode(xref) != -1;
+	}
+	
+	public Set<Xref> freeSearch(String text, int limit)
+	{
+		return Collections.emptySet();
+	}
+	
+	public IDMapperCapabilities getCapabilities()
+	{
+		return capabilities;
+	}
+	
+	public void close()
+	{
+		connected = false;
+	}
+	
+	public boolean isConnected()
+	{
+		return connected;
+	}
+	
+	@Override
+	public String toString()
+	{
+		return "In-memory IDMapper: " + dictionary.size() + " Xrefs, " + mappedXrefs.length + " mappings";
+	}
+}
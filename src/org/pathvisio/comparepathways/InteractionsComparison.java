@@ -17,10 +17,16 @@
 package org.pathvisio.comparepathways;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 
 import org.pathvisio.core.model.MLine;
 import org.pathvisio.core.model.ObjectType;
@@ -28,15 +34,16 @@ import org.pathvisio.core.model.Pathway;
 import org.pathvisio.core.model.PathwayElement;
 import org.pathvisio.core.model.GraphLink.GraphIdContainer;
 import org.pathvisio.core.model.PathwayElement.MAnchor;
-import org.pathvisio.core.view.VPathway;
+import org.pathvisio.core.util.ProgressKeeper;
 
 /**
- * This class is dedicated to Interaction Comparison and its related methods 
+ * This class is dedicated to Interaction Comparison and its related methods. 
+ * Like {@link PathwayElementComparision}, it only needs the Pathway (model) objects. 
  * @author Praveen Kumar
  */
 public class InteractionsComparison 
 {
-	private PathwaysInfo pathwaysInfo;
+	private final PathwayIndex pathwayIndex1, pathwayIndex2;
 	private List<List<PathwayElement>> dataNodeComparisonResults;
 	
 	private int interactionsCountInPw1, interactionsCountInPw2;
@@ -48,47 +55,77 @@ public class InteractionsComparison
 		return interactionsCountInPw2;
 	}
 	
+	private ExecutorService executorService;
+	/** 
+	 * @param executorService executor on which the interactions of both the pathways are found out concurrently; 
+	 * if null (the default), this is done one after the other in the calling thread.
+	 */
+	void setExecutorService(ExecutorService executorService){
+		this.executorService = executorService;
+	}
+	
+	private ComparisonListener comparisonListener;
+	/** 
+	 * @param comparisonListener receives the matches of each interaction from pathway1 as soon as they are found, can be null.
+	 */
+	void setComparisonListener(ComparisonListener comparisonListener){
+		this.comparisonListener = comparisonListener;
+	}
+	
+	private ComparisonMetrics.Recorder metrics = new ComparisonMetrics.Recorder();
+	/** 
+	 * @param metrics recorder to which the time spent finding out and matching the interactions is added.
+	 */
+	void setMetrics(ComparisonMetrics.Recorder metrics){
+		this.metrics = metrics;
+	}
+	
+	private ComparisonProgress extractingProgress = ComparisonProgress.NONE, matchingProgress = ComparisonProgress.NONE;
+	/**
+	 * Reports the progress of the comparison (the interactions found out in both the pathways, then matched) 
+	 * to the ProgressKeeper, as part of its progress between 2 percentages. The comparison is aborted with a 
+	 * {@link java.util.concurrent.CancellationException} once the ProgressKeeper is cancelled.
+	 * 
+	 * @param progressKeeper keeper with a total work of 100.
+	 */
+	void setProgressKeeper(ProgressKeeper progressKeeper, int fromPercent, int toPercent){
+		int extractedPercent = fromPercent + (toPercent - fromPercent) / 2;
+		extractingProgress = new ComparisonProgress(progressKeeper, "Finding out Interactions", fromPercent, extractedPercent);
+		matchingProgress = new ComparisonProgress(progressKeeper, "Comparing Interactions", extractedPercent, toPercent);
+	}
+	
 	//constructor
-	public InteractionsComparison(PathwaysInfo pathwaysInfo, List<List<PathwayElement>> dataNodeComparisonResults)
+	public InteractionsComparison(PathwayIndex pathwayIndex1, PathwayIndex pathwayIndex2, List<List<PathwayElement>> dataNodeComparisonResults)
 	{
 		this.dataNodeComparisonResults = dataNodeComparisonResults;
-		this.pathwaysInfo = pathwaysInfo;
+		this.pathwayIndex1 = pathwayIndex1;
+		this.pathwayIndex2 = pathwayIndex2;
 	}
 	
 	/**
-	 * Returns List of corresponding GraphId strings for the input list of MAnchors 
-	 * @param mAnchorList input list of MAnchors
+	 * Compares the interactions of 2 pathways for which no {@link PathwayIndex} has been built yet.
 	 */
-	private List<String> getAnchorGraphIds(List<MAnchor> mAnchorList)
+	public InteractionsComparison(Pathway pathway1, Pathway pathway2, List<List<PathwayElement>> dataNodeComparisonResults)
 	{
-		if(mAnchorList.isEmpty())
-			return null;
-		List<String> anchorGraphIds = new ArrayList<String>();
-		for(MAnchor mAnchor : mAnchorList)
-			anchorGraphIds.add(mAnchor.getGraphId());
-		return anchorGraphIds;
+		this(new PathwayIndex(pathway1), new PathwayIndex(pathway2), dataNodeComparisonResults);
 	}
 	
 	/**
-	 * Returns a list of unique Datanodes in a pathway, from a one-to-one Datanode comparsion results.
+	 * Returns a set of unique Datanodes in a pathway, from a one-to-one Datanode comparsion results.
 	 * 
-	 * @param pathway : either pathway1 or pathway2
+	 * @param pathwayIndex : index of either pathway1 or pathway2
 	 * @param dataNodeComparisonResults : list containing the results of Datanode comparison. 
 	 */
-	private List<PathwayElement> prepareUniqueDNsList(Pathway pathway, List<List<PathwayElement>> dataNodeComparisonResults)
+	private Set<PathwayElement> prepareUniqueDNsList(PathwayIndex pathwayIndex, List<List<PathwayElement>> dataNodeComparisonResults)
 	{
-		List<PathwayElement> uniqueDNList = new ArrayList<PathwayElement>();
+		Set<PathwayElement> uniqueDNList = new HashSet<PathwayElement>();
 		
 		int leftOrRightOfTheMainList = 0; // default left, 1 right
-		if(pathway == pathwaysInfo.getPathway2())
+		if(pathwayIndex == pathwayIndex2)
 			leftOrRightOfTheMainList = 1;
 		
 		for(List<PathwayElement> eachDNMatch : dataNodeComparisonResults)
-		{
-			PathwayElement pweDN = eachDNMatch.get(leftOrRightOfTheMainList);
-			if( !uniqueDNList.contains( pweDN ) ) 
-				uniqueDNList.add(pweDN);	
-		}
+			uniqueDNList.add(eachDNMatch.get(leftOrRightOfTheMainList));
 		
 		return uniqueDNList;
 	}
@@ -126,8 +163,8 @@ public class InteractionsComparison
   /**
 	* checks if the line interacts with a DN and an anchor (or) 2 anchors (or) 2 DNs at its ends
 	*
-	* @param line : the line under consideration.
-	* @param pathway : pathway in which the line is present.
+	* @param lineIndex : position of the line under consideration in the lines of the pathway.
+	* @param pathwayIndex : index of the pathway in which the line is present, which also has its end-points resolved.
 	* @param matchingDNsInThePathway : list of DNs in a pathway which match with the DNs in the other pathway.
 	*
 	* @return -1: if the line fails the above criteria;
@@ -135,15 +172,13 @@ public class InteractionsComparison
 	* 1: one DN and one anchor at its ends;
 	* 2: both DNs at its ends
 	*/
-	private int checkIfLineInteractsWithDNsOrAnchors(MLine line, 
-			List<PathwayElement> matchingDNsInThePathway, Pathway pathway)
+	private int checkIfLineInteractsWithDNsOrAnchors(int lineIndex, 
+			Set<PathwayElement> matchingDNsInThePathway, PathwayIndex pathwayIndex)
 	{
 		int numberOfDns = 0;
 		for(int i = 0; i < 2; i++) //i = 0 means the startGraphRef, i = 1: endGraphRef, the 2 count loop is to get both the end-points of the line 
 		{
-			String endPointGraphRef = (i == 0) ? line.getStartGraphRef(): line.getEndGraphRef();
-			
-			GraphIdContainer lineEndPoint = pathway.getGraphIdContainer(endPointGraphRef);
+			GraphIdContainer lineEndPoint = (i == 0) ? pathwayIndex.getLineStartPoint(lineIndex) : pathwayIndex.getLineEndPoint(lineIndex);
 			if(lineEndPoint == null || !(lineEndPoint instanceof PathwayElement 
 					|| lineEndPoint instanceof MAnchor) ) //If its not a DN or an MAnchor
 				return -1;
@@ -165,97 +200,151 @@ public class InteractionsComparison
 	}
 	
 	/**
-	 * categorizes the PWEs into lines that interact with a DN and an anchor (or) 2 anchors (or) 2 DNs at its ends
-	 * @param pathway : pathway in which to look for the lines.
-	 * @return returns 2 lists of lines. One that has 2 DNs at its ends and the other lines that doesn't.
+	 * categorizes the lines into lines that interact with a DN and an anchor (or) 2 anchors (or) 2 DNs at its ends
+	 * @param pathwayIndex : index of the pathway in which to look for the lines.
+	 * @return returns 2 lists of lines (as positions in {@link PathwayIndex#getLines()}). 
+	 * One that has 2 DNs at its ends and the other lines that doesn't.
 	 */
-	public List<List<MLine>> categorizePWEIntoLinesForInteractionComparison(Pathway pathway)
+	public List<List<Integer>> categorizePWEIntoLinesForInteractionComparison(PathwayIndex pathwayIndex)
 	{
-		List<MLine> linesWithTwoDNs = new ArrayList<MLine>();
-		List<MLine> otherLines = new ArrayList<MLine>(); // lines referring to a DN and an anchor (or) two anchors
-		List<List<MLine>> resultantLines = new ArrayList<List<MLine>>();
+		List<Integer> linesWithTwoDNs = new ArrayList<Integer>();
+		List<Integer> otherLines = new ArrayList<Integer>(); // lines referring to a DN and an anchor (or) two anchors
+		List<List<Integer>> resultantLines = new ArrayList<List<Integer>>();
 		
-		List<PathwayElement> matchingDNsInThePathway = prepareUniqueDNsList(pathway, dataNodeComparisonResults);
-		for(PathwayElement pwe: pathway.getDataObjects())
+		Set<PathwayElement> matchingDNsInThePathway = prepareUniqueDNsList(pathwayIndex, dataNodeComparisonResults);
+		for(int lineIndex = 0; lineIndex < pathwayIndex.getLines().size(); lineIndex++)
 		{
-			if(pwe instanceof MLine) 
-			{
-				MLine eachLine = (MLine)pwe;
-				int numberOfDNs = checkIfLineInteractsWithDNsOrAnchors(eachLine, matchingDNsInThePathway, pathway);
-				if(numberOfDNs == 2)
-					linesWithTwoDNs.add(eachLine);
-				else if (numberOfDNs != -1) // either 0 or 1 
-					otherLines.add(eachLine);
-			}
+			int numberOfDNs = checkIfLineInteractsWithDNsOrAnchors(lineIndex, matchingDNsInThePathway, pathwayIndex);
+			if(numberOfDNs == 2)
+				linesWithTwoDNs.add(lineIndex);
+			else if (numberOfDNs != -1) // either 0 or 1 
+				otherLines.add(lineIndex);
 		}
 		resultantLines.add(linesWithTwoDNs);
 		resultantLines.add(otherLines);
 		return resultantLines;
 	}
 	
+	/**
+	 * Adjacency index over the lines which can take part in an interaction: 
+	 * for every anchor GraphId, the lines which either end on that anchor or carry it. 
+	 * It is a view on the adjacency of all the lines kept in the {@link PathwayIndex}, 
+	 * restricted to the candidate lines and numbered by their position in the list of candidate lines.
+	 */
+	private static class AnchorAdjacencyIndex
+	{
+		final List<MLine> lines;
+		final GraphIdContainer[] startPoints, endPoints;
+		final List<List<String>> anchorGraphIds;
+		private final PathwayIndex pathwayIndex;
+		/** position of every line of the pathway in the list of candidate lines, -1 if it is not a candidate */
+		private final int[] candidatePositions;
+		
+		AnchorAdjacencyIndex(List<Integer> lineIndices, PathwayIndex pathwayIndex)
+		{
+			this.pathwayIndex = pathwayIndex;
+			lines = new ArrayList<MLine>(lineIndices.size());
+			startPoints = new GraphIdContainer[lineIndices.size()];
+			endPoints = new GraphIdContainer[lineIndices.size()];
+			anchorGraphIds = new ArrayList<List<String>>(lineIndices.size());
+			candidatePositions = new int[pathwayIndex.getLines().size()];
+			Arrays.fill(candidatePositions, -1);
+			for(int i = 0; i < lineIndices.size(); i++)
+			{
+				int lineIndex = lineIndices.get(i);
+				lines.add(pathwayIndex.getLines().get(lineIndex));
+				startPoints[i] = pathwayIndex.getLineStartPoint(lineIndex);
+				endPoints[i] = pathwayIndex.getLineEndPoint(lineIndex);
+				anchorGraphIds.add(pathwayIndex.getLineAnchorGraphIds(lineIndex));
+				candidatePositions[lineIndex] = i;
+			}
+		}
+		
+		void addLinesAdjacentTo(String anchorGraphId, Collection<Integer> candidateLines)
+		{
+			for(int lineIndex : pathwayIndex.getLinesAdjacentToAnchor(anchorGraphId))
+				if(candidatePositions[lineIndex] != -1)
+					candidateLines.add(candidatePositions[lineIndex]);
+		}
+	}
+	
 	/**
 	 * Finds out all the interactions in a given pathway. 
 	 * assumptions : only the first and the last points of a line are considered.
 	 * 
-	 * @param pathway: pathway in which to look for the interactions.
+	 * Starting from every line that connects 2 DNs (the root line), the interaction grows over the anchors it contains: 
+	 * a line joins the interaction if one of its end-points refers to one of these anchors, or if it carries one of them. 
+	 * The anchor through which a line joins is used up, and the anchors the line brings along become available. 
+	 * Of all the lines that can join, the one coming first in the list of candidate lines always joins first. 
+	 * Instead of rescanning all the lines after every join, the candidates are looked up in an {@link AnchorAdjacencyIndex} 
+	 * and kept in a priority queue ordered by their position in the list of candidate lines.
+	 * 
+	 * @param pathwayIndex: index of the pathway in which to look for the interactions.
 	 * 
 	 * @return List of interactions in the pathway. 
 	 * An interaction consists of interaction partners (i.e PathwayElements, which can be an MLine or Datanode).
 	 * Thus the interaction is represented as Set<PathwayElement>. 
 	 */   
-	public List< Set<PathwayElement> > findOutInteractionsInPathway(Pathway pathway)
+	public List< Set<PathwayElement> > findOutInteractionsInPathway(PathwayIndex pathwayIndex)
 	{
 		List< Set<PathwayElement> > interactionsListInPathway = new ArrayList<Set<PathwayElement>>();
 		
-		List<List<MLine>> probableInteractionLines = categorizePWEIntoLinesForInteractionComparison(pathway);
-		List<MLine> linesWithTwoDns = probableInteractionLines.get(0);
-		List<MLine> linesWithDnsAndAnchors = probableInteractionLines.get(1);
+		List<List<Integer>> probableInteractionLines = categorizePWEIntoLinesForInteractionComparison(pathwayIndex);
+		List<Integer> linesWithTwoDns = probableInteractionLines.get(0);
+		List<Integer> linesWithDnsAndAnchors = probableInteractionLines.get(1);
+		extractingProgress.addTotalWork(linesWithTwoDns.size());
 
-		List<MLine> resultantLines = new ArrayList<MLine>();
+		List<Integer> resultantLines = new ArrayList<Integer>();
 		resultantLines.addAll(linesWithDnsAndAnchors);
 		resultantLines.addAll(linesWithTwoDns);
 		
-		List<PathwayElement> linesNoLongerNeeded = new ArrayList<PathwayElement>();
+		AnchorAdjacencyIndex adjacencyIndex = new AnchorAdjacencyIndex(resultantLines, pathwayIndex);
+		boolean[] linesNoLongerNeeded = new boolean[resultantLines.size()];
 		
-		for(MLine eachRootLine : linesWithTwoDns)
+		for(int rootLineIndex = linesWithDnsAndAnchors.size(); rootLineIndex < resultantLines.size(); rootLineIndex++)
 		{
-			if(linesNoLongerNeeded.contains(eachRootLine))
+			extractingProgress.worked(1);
+			if(linesNoLongerNeeded[rootLineIndex])
 				continue;
-			linesNoLongerNeeded.add(eachRootLine);
+			linesNoLongerNeeded[rootLineIndex] = true;
 			
 			// contains the interaction partners. This will be added to the main list which maintains the interactions list
 			Set<PathwayElement> possibleInteractionPartnerListWithThisLine = new HashSet<PathwayElement>();  
 			Set<String> anchorsPresentInThePossibleInteraction = new HashSet<String>(); // for simplicity represent the anchors by the string IDs
 			
 			//add the line and its partners to the list
-			possibleInteractionPartnerListWithThisLine
-				.add((PathwayElement) pathway.getGraphIdContainer(eachRootLine.getStartGraphRef()));
-			possibleInteractionPartnerListWithThisLine
-				.add((PathwayElement) pathway.getGraphIdContainer(eachRootLine.getEndGraphRef()));
-			possibleInteractionPartnerListWithThisLine.add(eachRootLine);
+			possibleInteractionPartnerListWithThisLine.add((PathwayElement) adjacencyIndex.startPoints[rootLineIndex]);
+			possibleInteractionPartnerListWithThisLine.add((PathwayElement) adjacencyIndex.endPoints[rootLineIndex]);
+			possibleInteractionPartnerListWithThisLine.add(adjacencyIndex.lines.get(rootLineIndex));
 			
 			//these are the anchors present on the line itself
-			List<String> eachLineAnchorGraphIds = getAnchorGraphIds(eachRootLine.getMAnchors());
-			if(eachLineAnchorGraphIds != null)
-				anchorsPresentInThePossibleInteraction.addAll(eachLineAnchorGraphIds); // the new lines present can connect to these anchors.
-			else {// if there are no anchors on the Root Line, Interaction consists of just the two DNs and the line connecting them
+			List<String> eachLineAnchorGraphIds = adjacencyIndex.anchorGraphIds.get(rootLineIndex);
+			if(eachLineAnchorGraphIds == null) 
+			{// if there are no anchors on the Root Line, Interaction consists of just the two DNs and the line connecting them
 				interactionsListInPathway.add(possibleInteractionPartnerListWithThisLine);
 				continue;
 			}
 			
-			for(int j=0 ; j < resultantLines.size() ;j++)
+			// the lines which may be able to join the interaction, the one appearing first in the list of lines comes out first
+			PriorityQueue<Integer> candidateLines = new PriorityQueue<Integer>();
+			for(String anchorGraphId : eachLineAnchorGraphIds)
+				if(anchorsPresentInThePossibleInteraction.add(anchorGraphId)) // the new lines present can connect to these anchors.
+					adjacencyIndex.addLinesAdjacentTo(anchorGraphId, candidateLines);
+			
+			// if the Anchors set is empty, then no other lines can be part of this interaction
+			while(!candidateLines.isEmpty() && !anchorsPresentInThePossibleInteraction.isEmpty())
 			{
-				PathwayElement allOtherLine = resultantLines.get(j);
-				if(linesNoLongerNeeded.contains(allOtherLine)) // if the line is already part of the interaction, then skip 
+				int j = candidateLines.poll();
+				if(linesNoLongerNeeded[j]) // if the line is already part of an interaction, then skip 
 					continue;
-				if(anchorsPresentInThePossibleInteraction.isEmpty()) // if this Anchors List is empty, then no other lines can be part of this interaction
-					break;
 				
+				// the candidate may no longer touch any of the anchors, as the anchors get used up 
 				boolean lineAndAnchorInteract = false;
 				List<String> anchorsToRemove = new ArrayList<String>();
 				//anchors to which the lines' end-points may refer to 
+				MLine allOtherLine = adjacencyIndex.lines.get(j);
 				String startGraphRefId_otherLine = allOtherLine.getStartGraphRef();
-				GraphIdContainer lineEndPoint1 = pathway.getGraphIdContainer(startGraphRefId_otherLine);
+				GraphIdContainer lineEndPoint1 = adjacencyIndex.startPoints[j];
 				if(lineEndPoint1 instanceof MAnchor)
 					if(anchorsPresentInThePossibleInteraction.contains(startGraphRefId_otherLine)){
 						lineAndAnchorInteract = true;
@@ -263,7 +352,7 @@ public class InteractionsComparison
 					}
 				
 				String endGraphRefId_otherLine = allOtherLine.getEndGraphRef();
-				GraphIdContainer lineEndPoint2 = pathway.getGraphIdContainer(endGraphRefId_otherLine);
+				GraphIdContainer lineEndPoint2 = adjacencyIndex.endPoints[j];
 				if(lineEndPoint2 instanceof MAnchor)
 					if(anchorsPresentInThePossibleInteraction.contains(endGraphRefId_otherLine)){
 						lineAndAnchorInteract = true;
@@ -271,7 +360,7 @@ public class InteractionsComparison
 					}
 				
 				//these are the anchors which are present on the line itself
-				List<String> allOtherLineAnchorGraphIds = getAnchorGraphIds(allOtherLine.getMAnchors());
+				List<String> allOtherLineAnchorGraphIds = adjacencyIndex.anchorGraphIds.get(j);
 				if(allOtherLineAnchorGraphIds != null)
 				{
 					for (String anchorGraphId : allOtherLineAnchorGraphIds)
@@ -279,33 +368,39 @@ public class InteractionsComparison
 						if(anchorsPresentInThePossibleInteraction.contains(anchorGraphId))
 						{
 							lineAndAnchorInteract = true;
-							anchorsToRemove.add(anchorGraphId); // as it cannot be removed directly while the list is in a loop operation
+							anchorsToRemove.add(anchorGraphId); 
 							break;
 						}
 					}
 				}
 				
-				if(lineAndAnchorInteract)
-				{
-					j = -1; // to start over the loop; as it may contain lines that might have elements present in the latest element-comparison-list
-										
-					if(allOtherLineAnchorGraphIds != null)
-						anchorsPresentInThePossibleInteraction.addAll(allOtherLineAnchorGraphIds);
-					
-					if(lineEndPoint1 instanceof PathwayElement)
-						possibleInteractionPartnerListWithThisLine.add((PathwayElement)lineEndPoint1);
-					else // if not DN, then its an MAnchor
-						anchorsPresentInThePossibleInteraction.add(startGraphRefId_otherLine);
-					
-					if(lineEndPoint2 instanceof PathwayElement)
-						possibleInteractionPartnerListWithThisLine.add((PathwayElement)lineEndPoint2);
-					else
-						anchorsPresentInThePossibleInteraction.add(endGraphRefId_otherLine);
+				if(!lineAndAnchorInteract)
+					continue;
 				
-					possibleInteractionPartnerListWithThisLine.add(allOtherLine);
-					linesNoLongerNeeded.add(allOtherLine);
-				}
+				// anchors which become available through this line
+				List<String> anchorsAdded = new ArrayList<String>();
+				if(allOtherLineAnchorGraphIds != null)
+					for (String anchorGraphId : allOtherLineAnchorGraphIds)
+						if(anchorsPresentInThePossibleInteraction.add(anchorGraphId))
+							anchorsAdded.add(anchorGraphId);
+				
+				if(lineEndPoint1 instanceof PathwayElement)
+					possibleInteractionPartnerListWithThisLine.add((PathwayElement)lineEndPoint1);
+				else if(anchorsPresentInThePossibleInteraction.add(startGraphRefId_otherLine)) // if not DN, then its an MAnchor
+					anchorsAdded.add(startGraphRefId_otherLine);
+				
+				if(lineEndPoint2 instanceof PathwayElement)
+					possibleInteractionPartnerListWithThisLine.add((PathwayElement)lineEndPoint2);
+				else if(anchorsPresentInThePossibleInteraction.add(endGraphRefId_otherLine))
+					anchorsAdded.add(endGraphRefId_otherLine);
+			
+				possibleInteractionPartnerListWithThisLine.add(allOtherLine);
+				linesNoLongerNeeded[j] = true;
 				anchorsPresentInThePossibleInteraction.removeAll(anchorsToRemove);
+				
+				for(String anchorGraphId : anchorsAdded)
+					if(anchorsPresentInThePossibleInteraction.contains(anchorGraphId))
+						adjacencyIndex.addLinesAdjacentTo(anchorGraphId, candidateLines);
 			}
 			
 			interactionsListInPathway.add(possibleInteractionPartnerListWithThisLine);
@@ -313,6 +408,84 @@ public class InteractionsComparison
 		return interactionsListInPathway;
 	}
 	
+	/** 
+	 * Groups the matching Datanodes of both the pathways into match-classes: two Datanodes are in the same class 
+	 * if they are connected through a chain of Datanode matches. Thus matching Datanodes always have the same class id.
+	 * 
+	 * @param dataNodeComparisonResults : one-to-one Datanode comparison results.
+	 * @return matching Datanode to the id of its match-class.
+	 */
+	private static Map<PathwayElement, Integer> assignMatchClassIds(List<List<PathwayElement>> dataNodeComparisonResults)
+	{
+		Map<PathwayElement, Integer> dataNodeIds = new HashMap<PathwayElement, Integer>();
+		for(List<PathwayElement> eachDNMatch : dataNodeComparisonResults)
+			for(PathwayElement pwe : eachDNMatch)
+				if(!dataNodeIds.containsKey(pwe))
+					dataNodeIds.put(pwe, dataNodeIds.size());
+		
+		// union-find over the Datanodes, a match joins the classes of its 2 Datanodes
+		int[] parent = new int[dataNodeIds.size()];
+		for(int i = 0; i < parent.length; i++)
+			parent[i] = i;
+		for(List<PathwayElement> eachDNMatch : dataNodeComparisonResults)
+		{
+			int root1 = findRoot(parent, dataNodeIds.get(eachDNMatch.get(0)));
+			int root2 = findRoot(parent, dataNodeIds.get(eachDNMatch.get(1)));
+			if(root1 != root2)
+				parent[root2] = root1;
+		}
+		
+		Map<PathwayElement, Integer> matchClassIds = new HashMap<PathwayElement, Integer>();
+		for(Map.Entry<PathwayElement, Integer> entry : dataNodeIds.entrySet())
+			matchClassIds.put(entry.getKey(), findRoot(parent, entry.getValue()));
+		return matchClassIds;
+	}
+	
+	private static int findRoot(int[] parent, int i)
+	{
+		while(parent[i] != i)
+		{
+			parent[i] = parent[parent[i]]; // path halving
+			i = parent[i];
+		}
+		return i;
+	}
+	
+	/** used in the index key for looking up interactions by their size only */
+	private static final int NO_MATCH_CLASS = -1;
+	
+	/**
+	 * The canonical signature of an interaction: the match-classes of its Datanodes. MLines are ignored, as in the comparison.
+	 */
+	private static Set<Integer> getInteractionSignature(Set<PathwayElement> interaction, Map<PathwayElement, Integer> matchClassIds)
+	{
+		Set<Integer> signature = new HashSet<Integer>();
+		for(PathwayElement pwe : interaction)
+		{
+			if(pwe instanceof MLine)
+				continue;
+			Integer matchClassId = matchClassIds.get(pwe);
+			signature.add(matchClassId != null ? matchClassId : NO_MATCH_CLASS);
+		}
+		return signature;
+	}
+	
+	private static long getIndexKey(int interactionSize, int matchClassId)
+	{
+		return ((long) interactionSize << 32) | (matchClassId & 0xFFFFFFFFL);
+	}
+	
+	private static void addToIndex(Map<Long, List<Integer>> index, long key, int interactionIndex)
+	{
+		List<Integer> interactionIndices = index.get(key);
+		if(interactionIndices == null)
+		{
+			interactionIndices = new ArrayList<Integer>();
+			index.put(key, interactionIndices);
+		}
+		interactionIndices.add(interactionIndex);
+	}
+	
 	/**
 	 * compares the interactions from pathway1 against pathway2's using other methods like 'findOutInteractionsInPathway()'. 
 	 * An Interaction from pathway1 is compared to an interaction in pathway2 using just the DNs for now.
@@ -320,6 +493,10 @@ public class InteractionsComparison
 	 * And before the comparison begins, the count of interaction partners (lines and datanodes) in the 2 pathways are first checked 
 	 * to see if they are the same, only then the comparison is made.  
 	 * 
+	 * Rather than comparing every pair of interactions, the interactions of pathway2 are indexed on their size and the 
+	 * match-classes of their DNs (see {@link #assignMatchClassIds(List)}). An interaction from pathway1 is then only compared 
+	 * with the interactions of the same size that contain all of its match-classes.
+	 * 
 	 * @return List of matching interactions in the 2 pathways. 
 	 * Outer List represents the list of Matches. Inner List has the a pair of matching interactions. 
 	 * Its first element represents an interaction in Pathway1 and the 2nd element an interaction in Pathway2.
@@ -337,22 +514,78 @@ public class InteractionsComparison
 			System.out.println(mapEntry);
 		}*/
 		
-		List<Set<PathwayElement>> interactionsListInPathway1 = findOutInteractionsInPathway(pathwaysInfo.getPathway1());
+		//the interactions of both the pathways are found out independently of each other, concurrently if an ExecutorService is set
+		long extractionStart = metrics.start();
+		extractingProgress.start(0);
+		List<Callable<List<Set<PathwayElement>>>> interactionDiscoveries = new ArrayList<Callable<List<Set<PathwayElement>>>>();
+		for(final PathwayIndex pathwayIndex : new PathwayIndex[]{pathwayIndex1, pathwayIndex2})
+		{
+			interactionDiscoveries.add(new Callable<List<Set<PathwayElement>>>() 
+			{
+				public List<Set<PathwayElement>> call() 
+				{
+					return findOutInteractionsInPathway(pathwayIndex);
+				}
+			});
+		}
+		List<List<Set<PathwayElement>>> interactionsListInPathways = ParallelTasks.invokeAll(executorService, interactionDiscoveries);
+		metrics.stop(ComparisonMetrics.Phase.INTERACTION_EXTRACTION, extractionStart);
+		
+		List<Set<PathwayElement>> interactionsListInPathway1 = interactionsListInPathways.get(0);
 		interactionsCountInPw1 = interactionsListInPathway1.size();
 		//System.out.println("interaction list in pathway1 --- ");
-		//printResults(interactionsListInPathway1, pathwaysInfo.getVPathway1());
+		//printResults(interactionsListInPathway1);
 		
-		List<Set<PathwayElement>> interactionsListInPathway2 = findOutInteractionsInPathway(pathwaysInfo.getPathway2());
+		List<Set<PathwayElement>> interactionsListInPathway2 = interactionsListInPathways.get(1);
 		interactionsCountInPw2 = interactionsListInPathway2.size();
 		//System.out.println("interaction list in pathway2 --- ");
-		//printResults(interactionsListInPathway2, pathwaysInfo.getVPathway2());
+		//printResults(interactionsListInPathway2);
 		
 		//comparing the interactions found in pathway 1 and 2
+		long matchingStart = metrics.start();
+		Map<PathwayElement, Integer> matchClassIds = assignMatchClassIds(dataNodeComparisonResults);
+		List<Set<Integer>> signaturesInPathway2 = new ArrayList<Set<Integer>>();
+		Map<Long, List<Integer>> interactionsInPathway2BySizeAndClass = new HashMap<Long, List<Integer>>();
+		for(int j = 0; j < interactionsListInPathway2.size(); j++)
+		{
+			Set<PathwayElement> eachInteractionPw2 = interactionsListInPathway2.get(j);
+			Set<Integer> signature = getInteractionSignature(eachInteractionPw2, matchClassIds);
+			signaturesInPathway2.add(signature);
+			addToIndex(interactionsInPathway2BySizeAndClass, getIndexKey(eachInteractionPw2.size(), NO_MATCH_CLASS), j);
+			for(Integer matchClassId : signature)
+				if(matchClassId != NO_MATCH_CLASS)
+					addToIndex(interactionsInPathway2BySizeAndClass, getIndexKey(eachInteractionPw2.size(), matchClassId), j);
+		}
+		
+		matchingProgress.start(interactionsListInPathway1.size());
 		for(Set<PathwayElement> eachInteractionPw1 : interactionsListInPathway1)
 		{
-			for(Set<PathwayElement> eachInteractionPw2 : interactionsListInPathway2)
+			matchingProgress.worked(1);
+			Set<Integer> signaturePw1 = getInteractionSignature(eachInteractionPw1, matchClassIds);
+			
+			//only the Pathway2 interactions of the same size, sharing the least common match-class, need to be looked at
+			List<Integer> candidateInteractions = null;
+			for(Integer matchClassId : signaturePw1)
+			{
+				List<Integer> interactionsWithClass = interactionsInPathway2BySizeAndClass.get(getIndexKey(eachInteractionPw1.size(), matchClassId));
+				if(interactionsWithClass == null)
+				{
+					candidateInteractions = null;
+					break;
+				}
+				if(candidateInteractions == null || interactionsWithClass.size() < candidateInteractions.size())
+					candidateInteractions = interactionsWithClass;
+			}
+			if(signaturePw1.isEmpty()) // an interaction without DNs, matches all the interactions of the same size
+				candidateInteractions = interactionsInPathway2BySizeAndClass.get(getIndexKey(eachInteractionPw1.size(), NO_MATCH_CLASS));
+			if(candidateInteractions == null)
+				continue;
+			
+			int matchesFoundBefore = matchingInteractionsList.size();
+			for(int j : candidateInteractions)
 			{
-				if(eachInteractionPw1.size() != eachInteractionPw2.size()) //since the count of interacting partners are not same, skip this interaction
+				Set<PathwayElement> eachInteractionPw2 = interactionsListInPathway2.get(j);
+				if(!signaturesInPathway2.get(j).containsAll(signaturePw1))
 					continue;
 				
 				boolean interactionMatchFound = true; 
@@ -362,12 +595,9 @@ public class InteractionsComparison
 						continue;
 				
 					boolean pweInPw1Matches = false;
-					List<PathwayElement> listOfPWEsMapped = mappedDNcomparisonList.get(eachPWEInPW1);
-					for(PathwayElement eachPWEInPw2 : eachInteractionPw2)
+					for(PathwayElement eachPWEMapped : mappedDNcomparisonList.get(eachPWEInPW1))
 					{
-						if(eachPWEInPw2 instanceof MLine) 
-							continue;
-						if(listOfPWEsMapped.contains(eachPWEInPw2))
+						if(eachInteractionPw2.contains(eachPWEMapped))
 						{
 							pweInPw1Matches = true;
 							break;
@@ -384,10 +614,13 @@ public class InteractionsComparison
 					oneSetOfMatchingInteraction.add(eachInteractionPw1);
 					oneSetOfMatchingInteraction.add(eachInteractionPw2);
 					matchingInteractionsList.add(oneSetOfMatchingInteraction);
-					//System.out.println("interaction Match");
 				}
 			}
+			if(comparisonListener != null && matchingInteractionsList.size() > matchesFoundBefore)
+				comparisonListener.interactionMatchesFound(new ArrayList<List<Set<PathwayElement>>>(
+						matchingInteractionsList.subList(matchesFoundBefore, matchingInteractionsList.size())));
 		}
+		metrics.stop(ComparisonMetrics.Phase.INTERACTION_MATCHING, matchingStart);
 		return matchingInteractionsList;
 	}
 	
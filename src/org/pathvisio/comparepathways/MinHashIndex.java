@@ -0,0 +1,220 @@
+// Pathway Comparison plug-in,
+// a PathVisio plug-in for comparing 2 pathways based on Datanodes and the interaction between Datanodes
+// Copyright 2006-2011 BiGCaT Bioinformatics
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+package org.pathvisio.comparepathways;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * MinHash signatures of the canonical Xref sets of a collection of pathways, with a locality-sensitive hashing (LSH) 
+ * banding index on them, for finding the pairs of pathways which are likely to be similar without comparing every pair. 
+ * <p>
+ * The MinHash signature of a set holds, for each of a number of hash functions, the smallest hash of its elements; 
+ * the fraction of equal positions in 2 signatures estimates the Jaccard similarity J of the 2 sets. 
+ * The DataNode score of the comparison (2 &middot; matches / (n1 + n2)) is a Dice coefficient D, 
+ * which relates to the Jaccard similarity as D = 2J / (1 + J). 
+ * The signatures are cut into bands of rows; 2 pathways become a candidate pair if all the rows of at least one band 
+ * are equal. The number of rows per band is chosen so that pairs around the threshold are (nearly) always candidates.
+ */
+final class MinHashIndex 
+{
+	static final int DEFAULT_SIGNATURE_SIZE = 128;
+	
+	private final int signatureSize, bands, rowsPerBand;
+	private final double diceThreshold;
+	private final long[] hashSeeds;
+	private final List<int[]> signatures = new ArrayList<int[]>();
+	/** for every band, the hash of the rows of the band to the pathways having these rows */
+	private final List<Map<Long, List<Integer>>> buckets;
+	
+	/**
+	 * @param signatureSize number of hash functions, the error of the similarity estimates is about 1 / sqrt(signatureSize)
+	 * @param diceThreshold the Dice similarity above which pathways should become candidate pairs, in (0, 1]
+	 */
+	MinHashIndex(int signatureSize, double diceThreshold)
+	{
+		if(!(diceThreshold > 0 && diceThreshold <= 1))
+			throw new IllegalArgumentException("The Dice threshold has to be in (0, 1], not " + diceThreshold);
+		this.signatureSize = signatureSize;
+		this.diceThreshold = diceThreshold;
+		//the band (of r rows, out of b bands) S-curve rises steepest around J = (1/b)^(1/r); the steepest curve 
+		//rising below the threshold keeps the pairs around the threshold and drops most of the others
+		double jaccardThreshold = diceToJaccard(diceThreshold);
+		int rows = 1;
+		for(int r = 2; r <= signatureSize; r++)
+		{
+			if(Math.pow(1.0 / (signatureSize / r), 1.0 / r) <= jaccardThreshold)
+				rows = r;
+		}
+		rowsPerBand = rows;
+		bands = signatureSize / rows;
+		
+		hashSeeds = new long[signatureSize];
+		long seed = 0x2545F4914F6CDD1DL;
+		for(int i = 0; i < signatureSize; i++)
+		{
+			seed += 0x9E3779B97F4A7C15L;
+			hashSeeds[i] = mix(seed);
+		}
+		buckets = new ArrayList<Map<Long, List<Integer>>>(bands);
+		for(int i = 0; i < bands; i++)
+			buckets.add(new HashMap<Long, List<Integer>>());
+	}
+	
+	static double diceToJaccard(double dice)
+	{
+		return dice / (2 - dice);
+	}
+	
+	static double jaccardToDice(double jaccard)
+	{
+		return 2 * jaccard / (1 + jaccard);
+	}
+	
+	/** the finalizer of MurmurHash3, spreads the bits of the value over the whole long */
+	private static long mix(long value)
+	{
+		value ^= value >>> 33;
+		value *= 0xff51afd7ed558ccdL;
+		value ^= value >>> 33;
+		value *= 0xc4ceb9fe1a85ec53L;
+		value ^= value >>> 33;
+		return value;
+	}
+	
+	/** 64 bit FNV-1a hash of the string, the 32 bits of String.hashCode collide too often for large collections */
+	private static long hash(String key)
+	{
+		long hash = 0xcbf29ce484222325L;
+		for(int i = 0; i < key.length(); i++)
+			hash = (hash ^ key.charAt(i)) * 0x100000001b3L;
+		return hash;
+	}
+	
+	int[] computeSignature(Set<String> keys)
+	{
+		int[] signature = new int[signatureSize];
+		Arrays.fill(signature, Integer.MAX_VALUE);
+		for(String key : keys)
+		{
+			long keyHash = hash(key);
+			for(int i = 0; i < signatureSize; i++)
+			{
+				int elementHash = (int) (mix(keyHash ^ hashSeeds[i]) >>> 33);
+				if(elementHash < signature[i])
+					signature[i] = elementHash;
+			}
+		}
+		return signature;
+	}
+	
+	/**
+	 * Adds a pathway to the index. 
+	 * @param keys the canonical Xref keys of the pathway, see {@link PathwayCollectionIndex#getKeys(PathwayIndex, PathwayIndex.CanonicalXrefs)}
+	 * @return the number of the pathway in the index, in the order in which they were added
+	 */
+	int add(Set<String> keys)
+	{
+		int pathway = signatures.size();
+		int[] signature = computeSignature(keys);
+		signatures.add(signature);
+		//the signatures of the empty sets are all equal, but they are not similar to anything
+		if(keys.isEmpty())
+			return pathway;
+		for(int band = 0; band < bands; band++)
+		{
+			long bandHash = band;
+			for(int row = band * rowsPerBand; row < (band + 1) * rowsPerBand; row++)
+				bandHash = mix(bandHash * 31 + signature[row]);
+			List<Integer> pathways = buckets.get(band).get(bandHash);
+			if(pathways == null)
+			{
+				pathways = new ArrayList<Integer>();
+				buckets.get(band).put(bandHash, pathways);
+			}
+			pathways.add(pathway);
+		}
+		return pathway;
+	}
+	
+	/** @return the Jaccard similarity estimated from the signatures of the 2 pathways */
+	double estimateJaccard(int pathway1, int pathway2)
+	{
+		int[] signature1 = signatures.get(pathway1), signature2 = signatures.get(pathway2);
+		int equalRows = 0;
+		for(int i = 0; i < signatureSize; i++)
+			if(signature1[i] == signature2[i])
+				equalRows++;
+		return (double) equalRows / signatureSize;
+	}
+	
+	/** @return the Dice similarity estimated from the signatures of the 2 pathways */
+	double estimateDice(int pathway1, int pathway2)
+	{
+		return jaccardToDice(estimateJaccard(pathway1, pathway2));
+	}
+	
+	/**
+	 * @return the pairs of pathways which share at least one band and whose estimated Dice similarity is not 
+	 * clearly (by more than 2 standard errors of the estimate) below the threshold; each pair as {pathway1, pathway2}, 
+	 * with pathway1 &lt; pathway2, sorted on pathway1 then pathway2
+	 */
+	List<int[]> getCandidatePairs()
+	{
+		double minimumJaccard = diceToJaccard(diceThreshold) - 2 / Math.sqrt(signatureSize);
+		Set<Long> seenPairs = new HashSet<Long>();
+		List<int[]> candidatePairs = new ArrayList<int[]>();
+		for(Map<Long, List<Integer>> bandBuckets : buckets)
+		{
+			for(List<Integer> pathways : bandBuckets.values())
+			{
+				for(int i = 0; i < pathways.size(); i++)
+				{
+					for(int j = i + 1; j < pathways.size(); j++)
+					{
+						int pathway1 = pathways.get(i), pathway2 = pathways.get(j);
+						if(!seenPairs.add((long) pathway1 * signatures.size() + pathway2))
+							continue;
+						if(estimateJaccard(pathway1, pathway2) >= minimumJaccard)
+							candidatePairs.add(new int[] {pathway1, pathway2});
+					}
+				}
+			}
+		}
+		Collections.sort(candidatePairs, new Comparator<int[]>() 
+		{
+			public int compare(int[] pair1, int[] pair2) 
+			{
+				return pair1[0] != pair2[0] ? pair1[0] - pair2[0] : pair1[1] - pair2[1];
+			}
+		});
+		return candidatePairs;
+	}
+	
+	@Override
+	public String toString()
+	{
+		return "MinHash LSH index of " + signatures.size() + " pathways, " + bands + " bands of " + rowsPerBand + " rows";
+	}
+}
@@ -0,0 +1,148 @@
+// Pathway Comparison plug-in,
+// a PathVisio plug-in for comparing 2 pathways based on Datanodes and the interaction between Datanodes
+// Copyright 2006-2011 BiGCaT Bioinformatics
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+package org.pathvisio.comparepathways;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Helper for running the independent parts of a comparison (e.g. the DataNodeType buckets, or the 2 pathways) 
+ * concurrently, while keeping the results in a deterministic order.
+ */
+class ParallelTasks 
+{
+	private ParallelTasks()
+	{
+	}
+	
+	/**
+	 * Receives the result of every task, in the order of the tasks, as soon as it is available.
+	 */
+	interface ResultListener<T>
+	{
+		void resultAvailable(T result);
+	}
+	
+	/**
+	 * Runs the tasks and returns their results in the order of the tasks. 
+	 * 
+	 * @param executorService executor on which to run the tasks. If null, the tasks are run one after the other in the calling thread.
+	 * @param tasks the tasks to run.
+	 * 
+	 * @throws RuntimeException or Error if one of the tasks failed with it; checked exceptions are wrapped in a RuntimeException.
+	 */
+	static <T> List<T> invokeAll(ExecutorService executorService, List<Callable<T>> tasks)
+	{
+		return invokeAll(executorService, tasks, null);
+	}
+	
+	/**
+	 * Runs the tasks and returns their results in the order of the tasks. 
+	 * Each result is also passed on to the listener (in the calling thread), once the task and all the tasks before it are done. 
+	 * If one of the tasks fails, the tasks which have not started yet are cancelled.
+	 * 
+	 * @param executorService executor on which to run the tasks. If null, the tasks are run one after the other in the calling thread.
+	 * @param tasks the tasks to run.
+	 * @param resultListener listener for the results, can be null.
+	 * 
+	 * @throws RuntimeException or Error if one of the tasks failed with it; checked exceptions are wrapped in a RuntimeException.
+	 */
+	static <T> List<T> invokeAll(ExecutorService executorService, List<Callable<T>> tasks, ResultListener<T> resultListener)
+	{
+		List<T> results = new ArrayList<T>();
+		List<Future<T>> futures = new ArrayList<Future<T>>();
+		try {
+			if(executorService == null || tasks.size() < 2)
+			{
+				for(Callable<T> task : tasks)
+				{
+					T result = task.call();
+					results.add(result);
+					if(resultListener != null)
+						resultListener.resultAvailable(result);
+				}
+				return results;
+			}
+			
+			for(Callable<T> task : tasks)
+				futures.add(executorService.submit(task));
+			for(Future<T> future : futures)
+			{
+				T result = future.get();
+				results.add(result);
+				if(resultListener != null)
+					resultListener.resultAvailable(result);
+			}
+			return results;
+			
+		} catch (ExecutionException e) {
+			cancelAll(futures);
+			throw unwrap(e.getCause());
+		} catch (InterruptedException e) {
+			cancelAll(futures);
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Pathway comparison was interrupted", e);
+		} catch (Exception e) {
+			cancelAll(futures);
+			throw unwrap(e);
+		}
+	}
+	
+	private static void cancelAll(List<? extends Future<?>> futures)
+	{
+		for(Future<?> future : futures)
+			future.cancel(false);
+	}
+	
+	private static RuntimeException unwrap(Throwable cause)
+	{
+		if(cause instanceof RuntimeException)
+			return (RuntimeException) cause;
+		if(cause instanceof Error)
+			throw (Error) cause;
+		return new RuntimeException(cause);
+	}
+	
+	/**
+	 * Creates a thread pool for running (parts of) comparisons in the background. 
+	 * The threads are daemon threads, so that they do not keep PathVisio from exiting.
+	 * 
+	 * @param numberOfThreads number of threads, 0 or less means one thread per available processor.
+	 */
+	static ExecutorService createThreadPool(int numberOfThreads)
+	{
+		if(numberOfThreads <= 0)
+			numberOfThreads = Runtime.getRuntime().availableProcessors();
+		return Executors.newFixedThreadPool(numberOfThreads, new ThreadFactory() 
+		{
+			private int threadCount = 0;
+			
+			public synchronized Thread newThread(Runnable runnable) 
+			{
+				Thread thread = new Thread(runnable, "Pathway comparison " + (++threadCount));
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+}
@@ -0,0 +1,266 @@
+// Pathway Comparison plug-in,
+// a PathVisio plug-in for comparing 2 pathways based on Datanodes and the interaction between Datanodes
+// Copyright 2006-2011 BiGCaT Bioinformatics
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+package org.pathvisio.comparepathways;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.bridgedb.DataSource;
+import org.bridgedb.Xref;
+import org.pathvisio.core.model.DataNodeType;
+
+/**
+ * Inverted index of a collection of pathways (a directory of GPML files), for finding the pathways which overlap most 
+ * with a query pathway without comparing the query against each of them. 
+ * For every DataNodeType and canonical Xref (see {@link PathwayIndex.CanonicalXrefs}) it holds the pathways which have 
+ * a DataNode of that type with that canonical Xref; the pathways are ranked on the number of these keys they share 
+ * with the query, and only the best ones need to be compared in full.
+ * <p>
+ * The index is built by {@link BatchComparison#buildCollectionIndex(File)} and can be saved to and loaded from a file. 
+ * It is only meaningful for queries canonicalized to the same pivot DataSource, with the same gdb. 
+ */
+public final class PathwayCollectionIndex 
+{
+	private static final int FORMAT_MAGIC = 0x50434349;
+	private static final int FORMAT_VERSION = 1;
+	
+	private final File gpmlDirectory;
+	private final String[] fileNames;
+	private final DataSource pivotDataSource;
+	private final String idMapperIdentity;
+	/** key to the ascending numbers of the pathways containing it */
+	private final Map<String, int[]> pathwaysByKey;
+	
+	/**
+	 * A pathway of the collection found by {@link PathwayCollectionIndex#search(Set, int)}.
+	 */
+	public static final class SearchHit
+	{
+		private final File file;
+		private final int sharedKeyCount;
+		
+		private SearchHit(File file, int sharedKeyCount)
+		{
+			this.file = file;
+			this.sharedKeyCount = sharedKeyCount;
+		}
+		
+		/** @return the GPML file of the pathway */
+		public File getFile()
+		{
+			return file;
+		}
+		
+		/** @return the number of distinct (DataNodeType, canonical Xref) keys which the pathway shares with the query */
+		public int getSharedKeyCount()
+		{
+			return sharedKeyCount;
+		}
+	}
+	
+	private PathwayCollectionIndex(File gpmlDirectory, String[] fileNames, DataSource pivotDataSource, 
+			String idMapperIdentity, Map<String, int[]> pathwaysByKey)
+	{
+		this.gpmlDirectory = gpmlDirectory;
+		this.fileNames = fileNames;
+		this.pivotDataSource = pivotDataSource;
+		this.idMapperIdentity = idMapperIdentity;
+		this.pathwaysByKey = pathwaysByKey;
+	}
+	
+	/**
+	 * @param gpmlFiles the GPML files of the pathways, all in gpmlDirectory
+	 * @param pathwayIndexes the indexes of these pathways
+	 * @param canonicalXrefs the canonical Xrefs of these pathways
+	 */
+	static PathwayCollectionIndex build(File gpmlDirectory, List<File> gpmlFiles, List<PathwayIndex> pathwayIndexes, 
+			PathwayIndex.CanonicalXrefs[] canonicalXrefs, DataSource pivotDataSource, String idMapperIdentity)
+	{
+		String[] fileNames = new String[gpmlFiles.size()];
+		Map<String, List<Integer>> pathwayListsByKey = new HashMap<String, List<Integer>>();
+		for(int i = 0; i < fileNames.length; i++)
+		{
+			fileNames[i] = gpmlFiles.get(i).getName();
+			for(String key : getKeys(pathwayIndexes.get(i), canonicalXrefs[i]))
+			{
+				List<Integer> pathways = pathwayListsByKey.get(key);
+				if(pathways == null)
+				{
+					pathways = new ArrayList<Integer>();
+					pathwayListsByKey.put(key, pathways);
+				}
+				pathways.add(i);
+			}
+		}
+		
+		Map<String, int[]> pathwaysByKey = new HashMap<String, int[]>();
+		for(Map.Entry<String, List<Integer>> entry : pathwayListsByKey.entrySet())
+		{
+			int[] pathways = new int[entry.getValue().size()];
+			for(int i = 0; i < pathways.length; i++)
+				pathways[i] = entry.getValue().get(i);
+			pathwaysByKey.put(entry.getKey(), pathways);
+		}
+		return new PathwayCollectionIndex(gpmlDirectory.getAbsoluteFile(), fileNames, pivotDataSource, idMapperIdentity, pathwaysByKey);
+	}
+	
+	/**
+	 * @return the distinct keys of a pathway: a DataNodeType name with a canonical Xref of a DataNode of that type
+	 */
+	static Set<String> getKeys(PathwayIndex pathwayIndex, PathwayIndex.CanonicalXrefs canonicalXrefs)
+	{
+		DataNodeType[] dataNodeTypes = DataNodeType.getValues();
+		Set<String> keys = new LinkedHashSet<String>();
+		for(int index_DNType = 0; index_DNType < PathwayIndex.NUMBER_OF_DATANODE_TYPES; index_DNType++)
+		{
+			//the DataNodeTypes are stored by name, the order of DataNodeType.getValues() may differ between sessions
+			String typeName = index_DNType < dataNodeTypes.length ? dataNodeTypes[index_DNType].getName() : "";
+			for(Xref canonicalXref : canonicalXrefs.getCanonicalXrefsOfType(index_DNType))
+				keys.add(typeName + "\t" + Utility.getDataSourceKey(canonicalXref.getDataSource()) + "\t" + canonicalXref.getId());
+		}
+		return keys;
+	}
+	
+	/**
+	 * Ranks the pathways of the collection on the number of keys they share with the query.
+	 * 
+	 * @param queryKeys keys of the query pathway, see {@link #getKeys(PathwayIndex, PathwayIndex.CanonicalXrefs)}
+	 * @param maxHits the maximum number of pathways to return
+	 * @return the pathways sharing at least one key with the query, the ones sharing the most keys first
+	 */
+	List<SearchHit> search(Set<String> queryKeys, int maxHits)
+	{
+		final int[] sharedKeyCounts = new int[fileNames.length];
+		List<Integer> hits = new ArrayList<Integer>();
+		for(String key : queryKeys)
+		{
+			int[] pathways = pathwaysByKey.get(key);
+			if(pathways == null)
+				continue;
+			for(int pathway : pathways)
+			{
+				if(sharedKeyCounts[pathway]++ == 0)
+					hits.add(pathway);
+			}
+		}
+		Collections.sort(hits, new Comparator<Integer>() 
+		{
+			public int compare(Integer pathway1, Integer pathway2) 
+			{
+				int difference = sharedKeyCounts[pathway2] - sharedKeyCounts[pathway1];
+				return difference != 0 ? difference : fileNames[pathway1].compareTo(fileNames[pathway2]);
+			}
+		});
+		
+		List<SearchHit> searchHits = new ArrayList<SearchHit>();
+		for(int pathway : hits.subList(0, Math.min(maxHits, hits.size())))
+			searchHits.add(new SearchHit(new File(gpmlDirectory, fileNames[pathway]), sharedKeyCounts[pathway]));
+		return searchHits;
+	}
+	
+	/** @return the DataSource to which the Xrefs of the pathways (and of the queries) are canonicalized */
+	public DataSource getPivotDataSource()
+	{
+		return pivotDataSource;
+	}
+	
+	/** @return identity of the IDMapper with which the index was built, see {@link XrefMappingCache#getGdbIdentity(org.bridgedb.IDMapper)} */
+	String getIDMapperIdentity()
+	{
+		return idMapperIdentity;
+	}
+	
+	/** @return the number of pathways in the collection */
+	public int getPathwayCount()
+	{
+		return fileNames.length;
+	}
+	
+	/**
+	 * Writes the index: the directory, the pivot DataSource and the IDMapper identity, the file names, 
+	 * then every key with the numbers of its pathways.
+	 */
+	public void save(File file) throws IOException
+	{
+		DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+		try {
+			output.writeInt(FORMAT_MAGIC);
+			output.writeInt(FORMAT_VERSION);
+			output.writeUTF(gpmlDirectory.getPath());
+			output.writeUTF(pivotDataSource.getSystemCode());
+			output.writeUTF(idMapperIdentity);
+			output.writeInt(fileNames.length);
+			for(String fileName : fileNames)
+				output.writeUTF(fileName);
+			output.writeInt(pathwaysByKey.size());
+			for(Map.Entry<String, int[]> entry : pathwaysByKey.entrySet())
+			{
+				output.writeUTF(entry.getKey());
+				output.writeInt(entry.getValue().length);
+				for(int pathway : entry.getValue())
+					output.writeInt(pathway);
+			}
+		} finally {
+			output.close();
+		}
+	}
+	
+	public static PathwayCollectionIndex load(File file) throws IOException
+	{
+		DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		try {
+			if(input.readInt() != FORMAT_MAGIC)
+				throw new IOException(file + " is not a pathway collection index");
+			int version = input.readInt();
+			if(version != FORMAT_VERSION)
+				throw new IOException("Unsupported version " + version + " of the pathway collection index " + file);
+			File gpmlDirectory = new File(input.readUTF());
+			DataSource pivotDataSource = DataSource.getBySystemCode(input.readUTF());
+			String idMapperIdentity = input.readUTF();
+			String[] fileNames = new String[input.readInt()];
+			for(int i = 0; i < fileNames.length; i++)
+				fileNames[i] = input.readUTF();
+			int keyCount = input.readInt();
+			Map<String, int[]> pathwaysByKey = new HashMap<String, int[]>(2 * keyCount);
+			for(int i = 0; i < keyCount; i++)
+			{
+				String key = input.readUTF();
+				int[] pathways = new int[input.readInt()];
+				for(int j = 0; j < pathways.length; j++)
+					pathways[j] = input.readInt();
+				pathwaysByKey.put(key, pathways);
+			}
+			return new PathwayCollectionIndex(gpmlDirectory, fileNames, pivotDataSource, idMapperIdentity, pathwaysByKey);
+		} finally {
+			input.close();
+		}
+	}
+}
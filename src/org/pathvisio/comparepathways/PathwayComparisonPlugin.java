@@ -16,8 +16,15 @@
 //
 package org.pathvisio.comparepathways;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+
 import javax.swing.JTabbedPane;
 
+import org.pathvisio.core.debug.Logger;
+import org.pathvisio.core.preferences.GlobalPreference;
+import org.pathvisio.core.preferences.PreferenceManager;
 import org.pathvisio.desktop.PvDesktop;
 import org.pathvisio.desktop.plugin.Plugin;
 
@@ -27,11 +34,42 @@ import org.pathvisio.desktop.plugin.Plugin;
  */
 public class PathwayComparisonPlugin implements Plugin
 {
+	private static final String MAPPING_CACHE_FILE_NAME = "comparepathways-mapping-cache.txt";
+	
+	private XrefMappingCache xrefMappingCache;
+	private ExecutorService comparisonExecutor;
+	private ComparePane comparePane;
+	private ComparisonMetrics comparisonMetrics;
+	
 	@Override
 	public void init(PvDesktop pvDesktop)
 	{
-		ComparePopup comparePopup = new ComparePopup();
-		ComparePane comparePane = new ComparePane(pvDesktop.getSwingEngine(), comparePopup);
+		PreferenceManager preferenceManager = PreferenceManager.getCurrent();
+		xrefMappingCache = new XrefMappingCache(preferenceManager.getInt(ComparisonPreference.MAPPING_CACHE_SIZE));
+		File mappingCacheFile = getMappingCacheFile();
+		if(mappingCacheFile != null && mappingCacheFile.exists())
+		{
+			try {
+				xrefMappingCache.load(mappingCacheFile);
+			} catch (IOException e) {
+				Logger.log.error("Unable to read the Xref mapping cache from " + mappingCacheFile, e);
+			}
+		}
+		
+		//with a single thread there is nothing to gain from running the comparison in parallel 
+		int comparisonThreads = preferenceManager.getInt(ComparisonPreference.COMPARISON_THREADS);
+		if(comparisonThreads != 1)
+			comparisonExecutor = ParallelTasks.createThreadPool(comparisonThreads);
+		
+		comparisonMetrics = new ComparisonMetrics(preferenceManager.getBoolean(ComparisonPreference.LOG_COMPARISON_METRICS));
+		comparisonMetrics.register();
+		
+		//the ComparePane loads the mapping file in the background
+		String mappingFileName = preferenceManager.get(ComparisonPreference.MAPPING_FILE);
+		File mappingFile = mappingFileName != null && mappingFileName.length() > 0 ? new File(mappingFileName) : null;
+		
+		comparePane = new ComparePane(pvDesktop.getSwingEngine(), xrefMappingCache, mappingFile, 
+				comparisonExecutor, comparisonMetrics);
 		JTabbedPane tabbedPane = pvDesktop.getSideBarTabbedPane();
 		if(tabbedPane != null) 
 		{
@@ -42,6 +80,31 @@ public class PathwayComparisonPlugin implements Plugin
 	@Override
 	public void done() 
 	{
-		// TODO Auto-generated method stub
+		if(comparePane != null)
+			comparePane.shutdown();
+		if(comparisonExecutor != null)
+			comparisonExecutor.shutdownNow();
+		if(comparisonMetrics != null)
+			comparisonMetrics.unregister();
+		
+		File mappingCacheFile = getMappingCacheFile();
+		if(xrefMappingCache == null || mappingCacheFile == null)
+			return;
+		try {
+			xrefMappingCache.save(mappingCacheFile);
+		} catch (IOException e) {
+			Logger.log.error("Unable to write the Xref mapping cache to " + mappingCacheFile, e);
+		}
+	}
+	
+	/**
+	 * @return the file in the PathVisio application directory to which the Xref mapping cache is written, 
+	 * or null if the cache should not outlive this PathVisio session.
+	 */
+	private static File getMappingCacheFile()
+	{
+		if(!PreferenceManager.getCurrent().getBoolean(ComparisonPreference.MAPPING_CACHE_PERSISTENT))
+			return null;
+		return new File(GlobalPreference.getApplicationDir(), MAPPING_CACHE_FILE_NAME);
 	}
 }
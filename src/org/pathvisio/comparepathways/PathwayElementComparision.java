@@ -17,38 +17,32 @@
 package org.pathvisio.comparepathways;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 
 import org.bridgedb.DataSource;
-import org.bridgedb.IDMapperException;
-import org.bridgedb.IDMapperStack;
+import org.bridgedb.IDMapper;
 import org.bridgedb.Xref;
-import org.pathvisio.core.debug.Logger;
-import org.pathvisio.core.model.DataNodeType;
-import org.pathvisio.core.model.ObjectType;
 import org.pathvisio.core.model.Pathway;
 import org.pathvisio.core.model.PathwayElement;
+import org.pathvisio.core.util.ProgressKeeper;
 
 /**This class has all the Datanode comparison logic and is instantiated on every hit of compare button. 
+ * It works on the Pathway (model) objects only and does not need any VPathway, 
+ * so that comparisons can also be run without a GUI. Highlighting the results is left to the caller.
  * @author Prvaeen Kumar
  */
 public class PathwayElementComparision 
 {
-	private PathwaysInfo pathwaysInfo;
-	private IDMapperStack bridgeDBIDMapperStack;
-	
-	// + 1 is for the miscellaneous list which would store all the unmatched DataNodes
-	private final static int numberOfDNTypes = DataNodeType.getValues().length + 1; 
-		
-	/**	Each array element in the variable stores the index corresponding to a list of 
-	 * PathwayElements belonging to a particular DataNodeType. Since the same list is used 
-	 * to store both Pathway1 and Pathway2 datanodes, an index is needed to mark the separation*/
-	private int seperator_dataNodesTypesList[] = new int[numberOfDNTypes]; 
-
-	/** Used to dynamically group the PathwayElements of a particular dataNode Type.
-	 *  Each Array element corresponds to a list of PathwayElements belonging to a specific DataNode Type.*/ 
-	private List<PathwayElement> array_dataNodeTypesList[] = new ArrayList[numberOfDNTypes];  
+	private final PathwayIndex pathwayIndex1, pathwayIndex2;
+	private final IDMapper idMapper;
+	private XrefMappingStage xrefMappingStage;
 	
 	/** Each element in the outer ArrayList corresponds to a match and 
 	 the inner ArrayList has a list of entries corresponding to a specific match. 
@@ -56,163 +50,276 @@ public class PathwayElementComparision
 	 and the remaining ones are the respective matches found in Pathway2.*/   
 	private final List<List<PathwayElement>> dataNodeComparisonResults =  new ArrayList<List<PathwayElement>>();
 	
-	private int dnCountInPw1, dnCountInPw2;
 	int getDNcountInPw1(){
-		return dnCountInPw1;
+		return pathwayIndex1.getDataNodeCount();
 	}
 	
 	int getDNcountInPw2(){
-		return dnCountInPw2;
+		return pathwayIndex2.getDataNodeCount();
 	} 
 	
-	public PathwayElementComparision(PathwaysInfo pathwaysInfo, IDMapperStack bridgeDBIDMapperStack) 
+	private ExecutorService executorService;
+	/** 
+	 * @param executorService executor on which the DataNodeTypes are compared concurrently; 
+	 * if null (the default), they are compared one after the other in the calling thread.
+	 */
+	void setExecutorService(ExecutorService executorService){
+		this.executorService = executorService;
+	}
+	
+	private ComparisonListener comparisonListener;
+	/** 
+	 * @param comparisonListener receives the matches of each DataNodeType as soon as they are found, can be null.
+	 */
+	void setComparisonListener(ComparisonListener comparisonListener){
+		this.comparisonListener = comparisonListener;
+	}
+	
+	private ComparisonMetrics.Recorder metrics = new ComparisonMetrics.Recorder();
+	/** 
+	 * @param metrics recorder to which the time spent mapping and matching, and the IDMapper calls are added.
+	 */
+	void setMetrics(ComparisonMetrics.Recorder metrics){
+		this.metrics = metrics;
+		xrefMappingStage.setMetrics(metrics);
+	}
+	
+	private DataSource pivotDataSource;
+	/**
+	 * @param pivotDataSource if not null, the Xrefs of both pathways are mapped to this DataSource and the DataNodes are 
+	 * matched on their canonical Xrefs (see {@link PathwayIndex.CanonicalXrefs}), which are kept in the PathwayIndex for the 
+	 * next comparisons of the same pathway. If null (the default), the Pathway1 Xrefs are mapped to the DataSources of Pathway2. 
+	 */
+	void setPivotDataSource(DataSource pivotDataSource){
+		this.pivotDataSource = pivotDataSource;
+	}
+	
+	private ComparisonProgress comparingProgress = ComparisonProgress.NONE;
+	/**
+	 * Reports the progress of the comparison (the Xrefs mapped, then the DataNodes compared) to the ProgressKeeper, 
+	 * as part of its progress between 2 percentages. The comparison is aborted with a 
+	 * {@link java.util.concurrent.CancellationException} once the ProgressKeeper is cancelled.
+	 * 
+	 * @param progressKeeper keeper with a total work of 100.
+	 */
+	void setProgressKeeper(ProgressKeeper progressKeeper, int fromPercent, int toPercent){
+		//mapping the Xrefs takes nearly all the time
+		int mappedPercent = fromPercent + (toPercent - fromPercent) * 9 / 10;
+		xrefMappingStage.setProgress(new ComparisonProgress(progressKeeper, "Mapping DataNode Xrefs", fromPercent, mappedPercent));
+		comparingProgress = new ComparisonProgress(progressKeeper, "Comparing DataNodes", mappedPercent, toPercent);
+	}
+	
+	/**
+	 * @param pathwayIndex1 index of the first of the 2 pathways to compare.
+	 * @param pathwayIndex2 index of the second of the 2 pathways to compare.
+	 * @param idMapper IDMapper (usually the IDMapperStack of the loaded gdb), used for mapping the Xrefs of Pathway1.
+	 * @param xrefMappingCache cache of Xref mappings shared across comparisons, can be null. 
+	 */
+	public PathwayElementComparision(PathwayIndex pathwayIndex1, PathwayIndex pathwayIndex2, IDMapper idMapper, XrefMappingCache xrefMappingCache) 
 	{
-		this.pathwaysInfo = pathwaysInfo;
-		this.bridgeDBIDMapperStack = bridgeDBIDMapperStack;
+		this.pathwayIndex1 = pathwayIndex1;
+		this.pathwayIndex2 = pathwayIndex2;
+		this.idMapper = idMapper;
+		this.xrefMappingStage = new XrefMappingStage(idMapper, xrefMappingCache);
 		//generatePathwayCollectionReport("c:/pathways");
-		
-		for(int i = 0; i < numberOfDNTypes; i++)
-			array_dataNodeTypesList[i] = new ArrayList<PathwayElement>();
 	}
 	
-	/** categorizes PathwayElements found in the pathway based on their DataNode Types.
-	 *
-	 * @param pathway Pathway object on which the categorization of PathwayElements is to be performed.
-	 * @param dataNodeTypes Different DataNode types into which the PathwayElements in the Pathway object need to be categorized to.
-	 * 
-	 * @return count of Datanodes in the pathway*/
-	private int categorizePWEBasedOnDNType(Pathway pathway, DataNodeType ...dataNodeTypes ) 
+	/**
+	 * Compares 2 pathways for which no {@link PathwayIndex} has been built yet.
+	 * @see #PathwayElementComparision(PathwayIndex, PathwayIndex, IDMapper, XrefMappingCache)
+	 */
+	public PathwayElementComparision(Pathway pathway1, Pathway pathway2, IDMapper idMapper, XrefMappingCache xrefMappingCache) 
 	{
-		int dnCountInPw = 0;
-		for(PathwayElement pwe: pathway.getDataObjects())
-		{
-			boolean pweNotMatchingWithDNTypes = true;
-			if(pwe.getObjectType().equals(ObjectType.DATANODE)) 
-			{	
-				dnCountInPw++;
-				for(int i= 0; i < numberOfDNTypes-1; i++) 
-				{
-					if(pwe.getDataNodeType().equals(dataNodeTypes[i].getName())) 
-					{
-						array_dataNodeTypesList[i].add(pwe);
-						pweNotMatchingWithDNTypes = false;
-						break;
-					} 
-				}
-				if(pweNotMatchingWithDNTypes)
-					array_dataNodeTypesList[numberOfDNTypes-1].add(pwe);
-			}
-		}
-		return dnCountInPw;
+		this(new PathwayIndex(pathway1), new PathwayIndex(pathway2), idMapper, xrefMappingCache);
 	}
 	
-	/** Gets the unique list of Xref DataSources found in a pathway.
-	 *  
-	 *  @param pathway The Pathway object in which to look for the Xref DataSources
-	 *
-	 *  @return Unique list of Xref DataSources found in the pathway*/
-	private DataSource[] getUniqueSetOfXrefDataSourcesInPathway(Pathway pathway)
+	/** compares Pathway1's DataNodes of a certain DataNodeType with Pathway2's DataNodes of the same type. 
+	 * Pathway2's DataNodes are indexed on their Xrefs (see {@link PathwayIndex}) and each Pathway1 DataNode's 
+	 * mapped Xrefs are looked up in this index (a hash join). 
+	 * With a pivot DataSource, both sides are looked up on their canonical Xrefs instead (an equality join).
+	 * 
+	 * @param index_DNType index of the DataNodeType list
+	 * @param mappedPathway1Xrefs precomputed mappings of the Pathway1 Xrefs to the DataSources in Pathway2, 
+	 * null if canonicalXrefs are given
+	 * @param canonicalXrefs canonical Xrefs of Pathway1 and Pathway2, null if the Pathway1 Xrefs have been mapped
+	 * 
+	 * @return the matches found between the DataNodes of this type*/
+	private List<List<PathwayElement>> compareDataNodesOfType(int index_DNType, Map<Xref, Set<Xref>> mappedPathway1Xrefs, 
+			PathwayIndex.CanonicalXrefs[] canonicalXrefs)
 	{
-		List<DataSource> result = new ArrayList<DataSource>();
+		List<List<PathwayElement>> dataNodeTypeMatches = new ArrayList<List<PathwayElement>>();
+		if(pathwayIndex2.hasNoComparableXrefs(index_DNType))
+			return dataNodeTypeMatches;
 		
-		for(Xref xref : pathway.getDataNodeXrefs()) 
+		List<PathwayElement> dataNodeTypeList1 = pathwayIndex1.getDataNodesOfType(index_DNType);
+		List<PathwayElement> dataNodeTypeList2 = pathwayIndex2.getDataNodesOfType(index_DNType);
+		for(int i = 0; i < dataNodeTypeList1.size(); i++) 
 		{
-			DataSource xrefDataSource = xref.getDataSource();
-			if( xrefDataSource != null && !result.contains(xrefDataSource) ) 
+			comparingProgress.worked(1);
+			Set<Xref> mappedXrefsForPWE1;
+			if(canonicalXrefs != null)
+				mappedXrefsForPWE1 = canonicalXrefs[0].getCanonicalXrefs(index_DNType, i);
+			else
+			{
+				Xref pwe1Xref = pathwayIndex1.getComparableXref(index_DNType, i);
+				mappedXrefsForPWE1 = pwe1Xref != null ? mappedPathway1Xrefs.get(pwe1Xref) : null;
+			}
+			if(mappedXrefsForPWE1 == null)
+				continue;
+			
+			// sorted, so that the matches are reported in the same order as the Pathway2 DataNodes appear in the list
+			SortedSet<Integer> matchingPositions = new TreeSet<Integer>();
+			for(Xref mappedXref : mappedXrefsForPWE1)
+			{
+				List<Integer> positions = canonicalXrefs != null ? canonicalXrefs[1].getDataNodePositions(index_DNType, mappedXref) : 
+					pathwayIndex2.getDataNodePositions(index_DNType, mappedXref);
+				if(positions != null)
+					matchingPositions.addAll(positions);
+			}
+			
+			PathwayElement pwe1 = dataNodeTypeList1.get(i);
+			for(int j : matchingPositions) 
 			{
-				result.add(xrefDataSource);
+				PathwayElement pwe2 = dataNodeTypeList2.get(j);
+				List<PathwayElement> eachMatch = new ArrayList<PathwayElement>();
+				eachMatch.add(pwe1);
+				eachMatch.add(pwe2);
+				dataNodeTypeMatches.add(eachMatch);
 			}
 		}
-		if(result.size() > 0)
-			return result.toArray(new DataSource[result.size()]);
-		else
-			return null;
+		return dataNodeTypeMatches;
 	}
 	
-	/** Compares two {@link PathwayElement}s based on their Xrefs. Comparison at its lowest level.
-	 * @return true if the PathwayElements match.*/
-	private boolean compareDataNodesUsingXrefs(PathwayElement pwe1, PathwayElement pwe2, DataSource[] dataSourceArray) 
-	{		
-		Set<Xref> mappedXrefsForPWE1 = null;
-		try {
-			mappedXrefsForPWE1 = bridgeDBIDMapperStack.mapID(pwe1.getXref(), dataSourceArray);
-		} catch (IDMapperException e) {
-			Logger.log.error("IDMapperException Exception while mapping one of the Xrefs in Pathway1 to the DataSources found in Pathways2", e);
-			e.printStackTrace();
-		}
-		if( mappedXrefsForPWE1 != null && mappedXrefsForPWE1.contains(pwe2.getXref()) ) 
-		{
-			Utility.highlightPWE(pwe1, pathwaysInfo.getVPathway1(), false);
-			Utility.highlightPWE(pwe2, pathwaysInfo.getVPathway2(), false);
-			return true;
-		}
-		return false;
-	} 
-	
 	/** loops through DataNodeType list and compares Pathway1 DataNodes with Pathway2's. 
-	 * The actual datanode comparison happens here.
+	 * All Pathway1 Xrefs (or, with a pivot DataSource, the Xrefs of both pathways which are not canonicalized yet) 
+	 * are mapped in bulk through the {@link XrefMappingStage} before the comparison starts, each one only to the 
+	 * DataSources which the {@link TargetDataSourcePlanner} found worth mapping to. 
+	 * The DataNodeTypes are independent of each other, so they are compared concurrently if an ExecutorService is set; 
+	 * the matches are always reported in the order of the DataNodeTypes.
 	 * 
 	 * @return The result after comparing the datanodes in the 2 pathways*/
 	private List<List<PathwayElement>> compareBasedOnDataNodeType() 
 	{		
- 		DataSource[] arrayOfDataSourcesInPathway = getUniqueSetOfXrefDataSourcesInPathway(pathwaysInfo.getPathway2());
-		if(arrayOfDataSourcesInPathway == null)
+ 		DataSource[] arrayOfDataSourcesInPathway = pathwayIndex2.getDataSources();
+		if(arrayOfDataSourcesInPathway.length == 0)
 		{
 			return dataNodeComparisonResults;
 		}
-		for(int index_DNType = 0; index_DNType < numberOfDNTypes; index_DNType++)
+		long mappingStart = metrics.start();
+		final Map<Xref, Set<Xref>> mappedPathway1Xrefs;
+		final PathwayIndex.CanonicalXrefs[] canonicalXrefs;
+		if(pivotDataSource != null)
+		{
+			mappedPathway1Xrefs = null;
+			canonicalXrefs = xrefMappingStage.canonicalizeXrefs(new PathwayIndex[] {pathwayIndex1, pathwayIndex2}, pivotDataSource);
+		}
+		else
+		{
+			TargetDataSourcePlanner planner = new TargetDataSourcePlanner(idMapper);
+			mappedPathway1Xrefs = xrefMappingStage.mapXrefs(planner.planPathway1Mapping(pathwayIndex1, pathwayIndex2));
+			metrics.setMappingStatistics(planner.getStatistics());
+			canonicalXrefs = null;
+		}
+		metrics.stop(ComparisonMetrics.Phase.XREF_MAPPING, mappingStart);
+		
+		long matchingStart = metrics.start();
+		comparingProgress.start(getDNcountInPw1());
+		List<Callable<List<List<PathwayElement>>>> dataNodeTypeComparisons = new ArrayList<Callable<List<List<PathwayElement>>>>();
+		for(int index_DNType = 0; index_DNType < PathwayIndex.NUMBER_OF_DATANODE_TYPES; index_DNType++)
 		{
 			//skip the comparison against this DataNodeType if there are no PathwayElements corresponding to it in either Pathway1 or Pathway2 
-			if(seperator_dataNodesTypesList[index_DNType] == 0 || 
-					seperator_dataNodesTypesList[index_DNType] == array_dataNodeTypesList[index_DNType].size()) 
+			if(pathwayIndex1.getDataNodesOfType(index_DNType).isEmpty() || 
+					pathwayIndex2.getDataNodesOfType(index_DNType).isEmpty()) 
 				continue;
 			
-			//comparing Pathway1's DataNodes of a certain Type with Pathway2's DataNodes of the same type
-			for(int i = 0; i < seperator_dataNodesTypesList[index_DNType]; i++) 
+			final int dataNodeTypeIndex = index_DNType;
+			dataNodeTypeComparisons.add(new Callable<List<List<PathwayElement>>>() 
 			{
-				PathwayElement pwe1 = array_dataNodeTypesList[index_DNType].get(i);
-				Xref pwe1Xref = pwe1.getXref();
-				//Xref.getDataSource() returns null when attribute Database = "" (inside the Xref tag) in the gpml file
-				if(pwe1Xref.getId().trim().equals("") || pwe1Xref.getDataSource() == null) 
-					continue;
-				for(int j = seperator_dataNodesTypesList[index_DNType]; j < array_dataNodeTypesList[index_DNType].size(); j++) 
+				public List<List<PathwayElement>> call() 
 				{
-					PathwayElement pwe2 = array_dataNodeTypesList[index_DNType].get(j);
-					Xref pwe2Xref = pwe2.getXref();
-					if(pwe2Xref.getId().trim().equals("") || pwe2Xref.getDataSource() == null)
-						continue;
-					if(compareDataNodesUsingXrefs(pwe1, pwe2, arrayOfDataSourcesInPathway))
-					{
-						//array_dataNodeTypesList[index_DNType].remove(j);
-						List<PathwayElement> eachMatch = new ArrayList<PathwayElement>();
-						eachMatch.add(pwe1);
-						eachMatch.add(pwe2);
-						dataNodeComparisonResults.add(eachMatch);
-						//break;
-					}
+					return compareDataNodesOfType(dataNodeTypeIndex, mappedPathway1Xrefs, canonicalXrefs);
 				}
-			}
+			});
 		}
+		
+		ParallelTasks.invokeAll(executorService, dataNodeTypeComparisons, new ParallelTasks.ResultListener<List<List<PathwayElement>>>() 
+		{
+			public void resultAvailable(List<List<PathwayElement>> dataNodeTypeMatches) 
+			{
+				dataNodeComparisonResults.addAll(dataNodeTypeMatches);
+				//the DataNodes only match DataNodes of the same type, so the many-to-many groups never span 2 DataNodeTypes
+				if(comparisonListener != null && !dataNodeTypeMatches.isEmpty())
+					comparisonListener.dataNodeMatchesFound(groupManyToManyMatches(dataNodeTypeMatches));
+			}
+		});
+		metrics.stop(ComparisonMetrics.Phase.DATANODE_MATCHING, matchingStart);
 		return dataNodeComparisonResults;
 	}
 	
-	/**The main compare method where it first categorizes the PathwayElements and then compares them. 
-	 * This method calls other class methods to do the comparison. This is the comparison method at the highest level.
-	 *
-	 * @return The result after comparing the datanodes in the 2 pathways*/
-	public List<List<PathwayElement>> compareDataNodes() 
+	/**
+	 * Groups the one-to-one DataNode matches into many-to-many matches: the Pathway1 DataNodes which match 
+	 * exactly the same list of Pathway2 DataNodes form a single group. 
+	 * The list of matches of a DataNode is hashed as a whole (it serves as the canonical key of its group), 
+	 * so the grouping takes a single pass over the matches. 
+	 * 
+	 * @param dataNodeComparisonResults : one-to-one Datanode comparison results, the matches of a Pathway1 DataNode next to each other.
+	 * @return a many-to-many list of DN matches from pathway1 to pathway2, in the order in which the groups first appear. 
+	 * Each element is a list of 2 lists: the Pathway1 DataNodes of the group and the Pathway2 DataNodes they all match.
+	 */
+	static List<List<List<PathwayElement>>> groupManyToManyMatches(List<List<PathwayElement>> dataNodeComparisonResults)
 	{
-		dnCountInPw1 = categorizePWEBasedOnDNType(pathwaysInfo.getPathway1(), DataNodeType.getValues());
-		
-		/* Setting the index which marks the separation between Pathway 1 and Pathway 2 DataNodes. 
-		   This index indicates the beginning of the list associated to DataNodes belonging to Pathway2*/
-		for(int index_DNType = 0; index_DNType < numberOfDNTypes; index_DNType++)
+		//one-to-many: each Pathway1 DataNode with the list of its matches in Pathway2
+		Map<PathwayElement, List<PathwayElement>> oneToManyDNCompResults = new LinkedHashMap<PathwayElement, List<PathwayElement>>();
+		for(List<PathwayElement> eachDNMatch : dataNodeComparisonResults)
 		{
-			seperator_dataNodesTypesList[index_DNType] = array_dataNodeTypesList[index_DNType].size();
+			List<PathwayElement> pweListInPathway2 = oneToManyDNCompResults.get(eachDNMatch.get(0));
+			if(pweListInPathway2 == null)
+			{
+				pweListInPathway2 = new ArrayList<PathwayElement>();
+				oneToManyDNCompResults.put(eachDNMatch.get(0), pweListInPathway2);
+			}
+			pweListInPathway2.add(eachDNMatch.get(1));
 		}
 		
-		dnCountInPw2 = categorizePWEBasedOnDNType(pathwaysInfo.getPathway2(), DataNodeType.getValues());
+		//many-to-many: the Pathway1 DataNodes keyed on their list of matches
+		Map<List<PathwayElement>, List<PathwayElement>> keysByMatchList = new LinkedHashMap<List<PathwayElement>, List<PathwayElement>>();
+		for(Map.Entry<PathwayElement, List<PathwayElement>> mapEntry : oneToManyDNCompResults.entrySet())
+		{
+			List<PathwayElement> keysMappedToSameValues = keysByMatchList.get(mapEntry.getValue());
+			if(keysMappedToSameValues == null)
+			{
+				keysMappedToSameValues = new ArrayList<PathwayElement>();
+				keysByMatchList.put(mapEntry.getValue(), keysMappedToSameValues);
+			}
+			keysMappedToSameValues.add(mapEntry.getKey());
+		}
 		
+		List<List<List<PathwayElement>>> manyToManyDNList = new ArrayList<List<List<PathwayElement>>>(keysByMatchList.size()); 
+		for(Map.Entry<List<PathwayElement>, List<PathwayElement>> mapEntry : keysByMatchList.entrySet())
+		{
+			List<List<PathwayElement>> eachMapEntry = new ArrayList<List<PathwayElement>>();
+			eachMapEntry.add(mapEntry.getValue());
+			eachMapEntry.add(mapEntry.getKey());
+			manyToManyDNList.add(eachMapEntry);
+		}
+		return manyToManyDNList;
+	}
+	
+	/**
+	 * @return the DataNode matches found by {@link #compareDataNodes()}, grouped into many-to-many matches 
+	 * (see {@link #groupManyToManyMatches(List)}).
+	 */
+	public List<List<List<PathwayElement>>> getManyToManyDNComparisonResults()
+	{
+		return groupManyToManyMatches(dataNodeComparisonResults);
+	}
+	
+	/**The main compare method. The PathwayElements have already been categorized by the {@link PathwayIndex} of each pathway, 
+	 * so this only does the comparison. This is the comparison method at the highest level.
+	 *
+	 * @return The result after comparing the datanodes in the 2 pathways*/
+	public List<List<PathwayElement>> compareDataNodes() 
+	{
 		//getXrefListsOfPathwaysToCompare();
 		return compareBasedOnDataNodeType();
 	}
@@ -232,8 +339,8 @@ public class PathwayElementComparision
 			Class.forName("org.bridgedb.webservice.bridgerest.BridgeRest");
 			BioDataSource.init();	
 			IDMapper mapper = BridgeDb.connect ("idmapper-bridgerest:http://webservice.bridgedb.org/Human");	
-			List<Xref> src1 = pathwaysInfo.getPathway1().getDataNodeXrefs();
-			List<Xref> src2 = pathwaysInfo.getPathway2().getDataNodeXrefs();
+			List<Xref> src1 = pathway1.getDataNodeXrefs();
+			List<Xref> src2 = pathway2.getDataNodeXrefs();
 			List<Xref> xrefList1 = new ArrayList<Xref>();
 			List<Xref> xrefList2 = new ArrayList<Xref>();
 
@@ -0,0 +1,416 @@
+// Pathway Comparison plug-in,
+// a PathVisio plug-in for comparing 2 pathways based on Datanodes and the interaction between Datanodes
+// Copyright 2006-2011 BiGCaT Bioinformatics
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+package org.pathvisio.comparepathways;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.bridgedb.DataSource;
+import org.bridgedb.Xref;
+import org.pathvisio.core.model.DataNodeType;
+import org.pathvisio.core.model.GraphLink.GraphIdContainer;
+import org.pathvisio.core.model.MLine;
+import org.pathvisio.core.model.ObjectType;
+import org.pathvisio.core.model.Pathway;
+import org.pathvisio.core.model.PathwayElement;
+import org.pathvisio.core.model.PathwayElement.MAnchor;
+
+/**
+ * Immutable snapshot of the facts about a {@link Pathway} which the comparison needs: 
+ * its DataNodes grouped by DataNodeType (together with an index on their Xrefs), the distinct Xref DataSources, 
+ * the GraphId to element lookup and the lines with their resolved end-points and anchors.
+ * It is built once, when the pathway is loaded, and can then be used for any number of comparisons 
+ * (also concurrently, as nothing in it changes after construction, apart from the {@link CanonicalXrefs} 
+ * which the comparisons add once they have mapped the Xrefs to a pivot DataSource). 
+ * The Pathway itself is assumed not to change after the index has been built.
+ */
+public final class PathwayIndex 
+{
+	// + 1 is for the miscellaneous list which would store all the unmatched DataNodes
+	static final int NUMBER_OF_DATANODE_TYPES = DataNodeType.getValues().length + 1;
+	
+	private static final int[] NO_LINES = new int[0];
+	
+	private final Pathway pathway;
+	private final int dataNodeCount;
+	
+	/** Each element is the list of DataNodes belonging to a particular DataNodeType, the last one has the DataNodes of an unknown type */
+	private final List<List<PathwayElement>> dataNodesByType;
+	/** The Xrefs of the DataNodes in {@link #dataNodesByType}, null for the DataNodes whose Xref can not take part in the comparison */
+	private final Xref[][] comparableXrefsByType;
+	/** For each DataNodeType, Xref to the (ascending) positions of the DataNodes carrying that Xref */
+	private final List<Map<Xref, List<Integer>>> dataNodePositionsByXref;
+	private final DataSource[] dataSources;
+	
+	private final Map<String, GraphIdContainer> graphIdContainers = new HashMap<String, GraphIdContainer>();
+	private final List<MLine> lines;
+	private final GraphIdContainer[] lineStartPoints, lineEndPoints;
+	private final List<List<String>> lineAnchorGraphIds;
+	/** for every anchor GraphId, the lines which either end on that anchor or carry it */
+	private final Map<String, int[]> linesByAnchorGraphId = new HashMap<String, int[]>();
+	/** the canonical Xrefs computed so far, keyed on the pivot DataSource and the gdb they were mapped with; guarded by this */
+	private final Map<String, CanonicalXrefs> canonicalXrefsByKey = new HashMap<String, CanonicalXrefs>();
+	
+	public PathwayIndex(Pathway pathway)
+	{
+		this.pathway = pathway;
+		DataNodeType[] dataNodeTypes = DataNodeType.getValues();
+		
+		List<List<PathwayElement>> dataNodes = new ArrayList<List<PathwayElement>>(NUMBER_OF_DATANODE_TYPES);
+		for(int i = 0; i < NUMBER_OF_DATANODE_TYPES; i++)
+			dataNodes.add(new ArrayList<PathwayElement>());
+		List<MLine> allLines = new ArrayList<MLine>();
+		Set<DataSource> distinctDataSources = new LinkedHashSet<DataSource>();
+		int count = 0;
+		
+		for(PathwayElement pwe : pathway.getDataObjects())
+		{
+			if(pwe.getGraphId() != null)
+				graphIdContainers.put(pwe.getGraphId(), pwe);
+			
+			if(pwe.getObjectType().equals(ObjectType.DATANODE)) 
+			{
+				count++;
+				dataNodes.get(getDataNodeTypeIndex(pwe, dataNodeTypes)).add(pwe);
+				if(pwe.getXref().getDataSource() != null)
+					distinctDataSources.add(pwe.getXref().getDataSource());
+			}
+			else if(pwe instanceof MLine)
+			{
+				MLine line = (MLine) pwe;
+				allLines.add(line);
+				for(MAnchor mAnchor : line.getMAnchors())
+					if(mAnchor.getGraphId() != null)
+						graphIdContainers.put(mAnchor.getGraphId(), mAnchor);
+			}
+		}
+		
+		dataNodeCount = count;
+		dataSources = distinctDataSources.toArray(new DataSource[distinctDataSources.size()]);
+		
+		List<List<PathwayElement>> unmodifiableDataNodes = new ArrayList<List<PathwayElement>>(NUMBER_OF_DATANODE_TYPES);
+		comparableXrefsByType = new Xref[NUMBER_OF_DATANODE_TYPES][];
+		List<Map<Xref, List<Integer>>> positionsByXrefByType = new ArrayList<Map<Xref, List<Integer>>>(NUMBER_OF_DATANODE_TYPES);
+		for(int i = 0; i < NUMBER_OF_DATANODE_TYPES; i++)
+		{
+			List<PathwayElement> dataNodesOfType = dataNodes.get(i);
+			unmodifiableDataNodes.add(Collections.unmodifiableList(dataNodesOfType));
+			comparableXrefsByType[i] = new Xref[dataNodesOfType.size()];
+			Map<Xref, List<Integer>> positionsByXref = new HashMap<Xref, List<Integer>>();
+			for(int j = 0; j < dataNodesOfType.size(); j++)
+			{
+				Xref xref = dataNodesOfType.get(j).getXref();
+				if(!isComparableXref(xref))
+					continue;
+				comparableXrefsByType[i][j] = xref;
+				List<Integer> positions = positionsByXref.get(xref);
+				if(positions == null)
+				{
+					positions = new ArrayList<Integer>();
+					positionsByXref.put(xref, positions);
+				}
+				positions.add(j);
+			}
+			positionsByXrefByType.add(positionsByXref);
+		}
+		dataNodesByType = Collections.unmodifiableList(unmodifiableDataNodes);
+		dataNodePositionsByXref = Collections.unmodifiableList(positionsByXrefByType);
+		
+		lines = Collections.unmodifiableList(allLines);
+		lineStartPoints = new GraphIdContainer[lines.size()];
+		lineEndPoints = new GraphIdContainer[lines.size()];
+		List<List<String>> anchorGraphIds = new ArrayList<List<String>>(lines.size());
+		Map<String, List<Integer>> adjacentLines = new HashMap<String, List<Integer>>();
+		for(int i = 0; i < lines.size(); i++)
+		{
+			MLine line = lines.get(i);
+			lineStartPoints[i] = graphIdContainers.get(line.getStartGraphRef());
+			lineEndPoints[i] = graphIdContainers.get(line.getEndGraphRef());
+			List<String> anchorGraphIdsOfLine = getAnchorGraphIds(line.getMAnchors());
+			anchorGraphIds.add(anchorGraphIdsOfLine);
+			
+			if(lineStartPoints[i] instanceof MAnchor)
+				addAdjacentLine(adjacentLines, line.getStartGraphRef(), i);
+			if(lineEndPoints[i] instanceof MAnchor)
+				addAdjacentLine(adjacentLines, line.getEndGraphRef(), i);
+			if(anchorGraphIdsOfLine != null)
+				for(String anchorGraphId : anchorGraphIdsOfLine)
+					addAdjacentLine(adjacentLines, anchorGraphId, i);
+		}
+		lineAnchorGraphIds = Collections.unmodifiableList(anchorGraphIds);
+		for(Map.Entry<String, List<Integer>> entry : adjacentLines.entrySet())
+		{
+			int[] lineIndices = new int[entry.getValue().size()];
+			for(int i = 0; i < lineIndices.length; i++)
+				lineIndices[i] = entry.getValue().get(i);
+			linesByAnchorGraphId.put(entry.getKey(), lineIndices);
+		}
+	}
+	
+	/** @return index of the DataNodeType list to which the DataNode belongs, the last index if its type is unknown */
+	private static int getDataNodeTypeIndex(PathwayElement dataNode, DataNodeType[] dataNodeTypes)
+	{
+		for(int i = 0; i < NUMBER_OF_DATANODE_TYPES - 1; i++) 
+			if(dataNode.getDataNodeType().equals(dataNodeTypes[i].getName())) 
+				return i;
+		return NUMBER_OF_DATANODE_TYPES - 1;
+	}
+	
+	/** Checks if the Xref of a DataNode can take part in the comparison.
+	 * Xref.getDataSource() returns null when attribute Database = "" (inside the Xref tag) in the gpml file
+	 * @return true if the Xref has both an id and a DataSource*/
+	static boolean isComparableXref(Xref xref)
+	{
+		return !xref.getId().trim().equals("") && xref.getDataSource() != null;
+	}
+	
+	/**
+	 * Returns List of corresponding GraphId strings for the input list of MAnchors, null if there are no MAnchors 
+	 */
+	private static List<String> getAnchorGraphIds(List<MAnchor> mAnchorList)
+	{
+		if(mAnchorList.isEmpty())
+			return null;
+		List<String> anchorGraphIds = new ArrayList<String>();
+		for(MAnchor mAnchor : mAnchorList)
+			anchorGraphIds.add(mAnchor.getGraphId());
+		return Collections.unmodifiableList(anchorGraphIds);
+	}
+	
+	private static void addAdjacentLine(Map<String, List<Integer>> adjacentLines, String anchorGraphId, int lineIndex)
+	{
+		List<Integer> lineIndices = adjacentLines.get(anchorGraphId);
+		if(lineIndices == null)
+		{
+			lineIndices = new ArrayList<Integer>();
+			adjacentLines.put(anchorGraphId, lineIndices);
+		}
+		lineIndices.add(lineIndex);
+	}
+	
+	public Pathway getPathway()
+	{
+		return pathway;
+	}
+	
+	/** @return number of DataNodes in the pathway */
+	public int getDataNodeCount()
+	{
+		return dataNodeCount;
+	}
+	
+	/** 
+	 * @param dataNodeTypeIndex index into {@link DataNodeType#getValues()}, 
+	 * or {@link #NUMBER_OF_DATANODE_TYPES} - 1 for the DataNodes of an unknown type
+	 * @return the DataNodes of this type, in the order of their appearance in the pathway
+	 */
+	List<PathwayElement> getDataNodesOfType(int dataNodeTypeIndex)
+	{
+		return dataNodesByType.get(dataNodeTypeIndex);
+	}
+	
+	/** @return Xref of the DataNode at this position of {@link #getDataNodesOfType(int)}, or null if the Xref can not take part in the comparison */
+	Xref getComparableXref(int dataNodeTypeIndex, int position)
+	{
+		return comparableXrefsByType[dataNodeTypeIndex][position];
+	}
+	
+	/** @return the positions in {@link #getDataNodesOfType(int)} of the DataNodes carrying this Xref, or null if there are none */
+	List<Integer> getDataNodePositions(int dataNodeTypeIndex, Xref xref)
+	{
+		List<Integer> positions = dataNodePositionsByXref.get(dataNodeTypeIndex).get(xref);
+		return positions != null ? Collections.unmodifiableList(positions) : null;
+	}
+	
+	/** @return the distinct comparable Xrefs of the DataNodes of all the types */
+	Set<Xref> getComparableXrefs()
+	{
+		Set<Xref> comparableXrefs = new LinkedHashSet<Xref>();
+		for(int i = 0; i < NUMBER_OF_DATANODE_TYPES; i++)
+			comparableXrefs.addAll(dataNodePositionsByXref.get(i).keySet());
+		return comparableXrefs;
+	}
+	
+	/** @return true if none of the DataNodes of this type has a comparable Xref */
+	boolean hasNoComparableXrefs(int dataNodeTypeIndex)
+	{
+		return dataNodePositionsByXref.get(dataNodeTypeIndex).isEmpty();
+	}
+	
+	/** @return the distinct DataSources of the DataNode Xrefs, in the order of their appearance; an empty array if there are none */
+	public DataSource[] getDataSources()
+	{
+		return dataSources.clone();
+	}
+	
+	/** @return the DataNode, line, group ... or MAnchor with this GraphId, null if there is none */
+	GraphIdContainer getGraphIdContainer(String graphId)
+	{
+		return graphIdContainers.get(graphId);
+	}
+	
+	/** @return all the lines in the pathway, in the order of their appearance */
+	List<MLine> getLines()
+	{
+		return lines;
+	}
+	
+	/** @return the element to which the start of the line at this position of {@link #getLines()} refers, null if none */
+	GraphIdContainer getLineStartPoint(int lineIndex)
+	{
+		return lineStartPoints[lineIndex];
+	}
+	
+	/** @return the element to which the end of the line at this position of {@link #getLines()} refers, null if none */
+	GraphIdContainer getLineEndPoint(int lineIndex)
+	{
+		return lineEndPoints[lineIndex];
+	}
+	
+	/** @return the GraphIds of the MAnchors on the line at this position of {@link #getLines()}, null if it has no MAnchors */
+	List<String> getLineAnchorGraphIds(int lineIndex)
+	{
+		return lineAnchorGraphIds.get(lineIndex);
+	}
+	
+	/** @return positions in {@link #getLines()} of the lines which either end on the anchor or carry it, in ascending order. 
+	 * The returned array must not be modified. */
+	int[] getLinesAdjacentToAnchor(String anchorGraphId)
+	{
+		int[] lineIndices = linesByAnchorGraphId.get(anchorGraphId);
+		return lineIndices != null ? lineIndices : NO_LINES;
+	}
+	
+	/** 
+	 * @param key identifies the pivot DataSource and the gdb with which the Xrefs were mapped.
+	 * @return the canonical Xrefs stored for this key, null if they have not been computed yet 
+	 */
+	synchronized CanonicalXrefs getCanonicalXrefs(String key)
+	{
+		return canonicalXrefsByKey.get(key);
+	}
+	
+	/** 
+	 * Stores the canonical Xrefs computed by a comparison, so that the other comparisons of this pathway do not 
+	 * have to map its Xrefs again. 
+	 * @return the canonical Xrefs stored for this key, which are the ones stored by another comparison if it got there first
+	 */
+	synchronized CanonicalXrefs putCanonicalXrefs(String key, CanonicalXrefs canonicalXrefs)
+	{
+		CanonicalXrefs storedCanonicalXrefs = canonicalXrefsByKey.get(key);
+		if(storedCanonicalXrefs != null)
+			return storedCanonicalXrefs;
+		canonicalXrefsByKey.put(key, canonicalXrefs);
+		return canonicalXrefs;
+	}
+	
+	/**
+	 * The DataNode Xrefs of a pathway mapped to a single pivot DataSource (e.g. Ensembl or Entrez Gene). 
+	 * Once both pathways are canonicalized to the same pivot, 2 DataNodes match if they share a canonical Xref, 
+	 * which makes the comparison symmetric and lets the canonical Xrefs of a pathway be reused against any other pathway. 
+	 * An Xref which does not map to the pivot DataSource is its own canonical Xref, so identical Xrefs always match.
+	 */
+	static final class CanonicalXrefs
+	{
+		/** for each DataNodeType and position, the canonical Xrefs of the DataNode, null if its Xref is not comparable */
+		private final List<List<Set<Xref>>> canonicalXrefsByType;
+		/** for each DataNodeType, canonical Xref to the (ascending) positions of the DataNodes carrying that canonical Xref */
+		private final List<Map<Xref, List<Integer>>> dataNodePositionsByCanonicalXref;
+		
+		/**
+		 * @param mappedXrefs mappings to the pivot DataSource of (at least) all the comparable Xrefs of the pathway
+		 */
+		CanonicalXrefs(PathwayIndex pathwayIndex, DataSource pivotDataSource, Map<Xref, Set<Xref>> mappedXrefs)
+		{
+			List<List<Set<Xref>>> canonicalXrefsOfAllTypes = new ArrayList<List<Set<Xref>>>(NUMBER_OF_DATANODE_TYPES);
+			List<Map<Xref, List<Integer>>> positionsOfAllTypes = new ArrayList<Map<Xref, List<Integer>>>(NUMBER_OF_DATANODE_TYPES);
+			Map<Xref, Set<Xref>> canonicalXrefsByXref = new HashMap<Xref, Set<Xref>>();
+			for(int i = 0; i < NUMBER_OF_DATANODE_TYPES; i++)
+			{
+				int dataNodeCount = pathwayIndex.getDataNodesOfType(i).size();
+				List<Set<Xref>> canonicalXrefsOfType = new ArrayList<Set<Xref>>(dataNodeCount);
+				Map<Xref, List<Integer>> positionsByCanonicalXref = new HashMap<Xref, List<Integer>>();
+				for(int j = 0; j < dataNodeCount; j++)
+				{
+					Xref xref = pathwayIndex.getComparableXref(i, j);
+					if(xref == null)
+					{
+						canonicalXrefsOfType.add(null);
+						continue;
+					}
+					Set<Xref> canonicalXrefs = canonicalXrefsByXref.get(xref);
+					if(canonicalXrefs == null)
+					{
+						canonicalXrefs = canonicalize(xref, pivotDataSource, mappedXrefs.get(xref));
+						canonicalXrefsByXref.put(xref, canonicalXrefs);
+					}
+					canonicalXrefsOfType.add(canonicalXrefs);
+					for(Xref canonicalXref : canonicalXrefs)
+					{
+						List<Integer> positions = positionsByCanonicalXref.get(canonicalXref);
+						if(positions == null)
+						{
+							positions = new ArrayList<Integer>();
+							positionsByCanonicalXref.put(canonicalXref, positions);
+						}
+						positions.add(j);
+					}
+				}
+				canonicalXrefsOfAllTypes.add(Collections.unmodifiableList(canonicalXrefsOfType));
+				positionsOfAllTypes.add(positionsByCanonicalXref);
+			}
+			canonicalXrefsByType = Collections.unmodifiableList(canonicalXrefsOfAllTypes);
+			dataNodePositionsByCanonicalXref = Collections.unmodifiableList(positionsOfAllTypes);
+		}
+		
+		private static Set<Xref> canonicalize(Xref xref, DataSource pivotDataSource, Set<Xref> mappedXrefs)
+		{
+			Set<Xref> canonicalXrefs = new LinkedHashSet<Xref>();
+			if(mappedXrefs != null)
+				canonicalXrefs.addAll(mappedXrefs);
+			if(canonicalXrefs.isEmpty() || pivotDataSource.equals(xref.getDataSource()))
+				canonicalXrefs.add(xref);
+			return Collections.unmodifiableSet(canonicalXrefs);
+		}
+		
+		/** @return the canonical Xrefs of the DataNode at this position of {@link PathwayIndex#getDataNodesOfType(int)}, 
+		 * null if its Xref can not take part in the comparison */
+		Set<Xref> getCanonicalXrefs(int dataNodeTypeIndex, int position)
+		{
+			return canonicalXrefsByType.get(dataNodeTypeIndex).get(position);
+		}
+		
+		/** @return the distinct canonical Xrefs of the DataNodes of this type */
+		Set<Xref> getCanonicalXrefsOfType(int dataNodeTypeIndex)
+		{
+			return Collections.unmodifiableSet(dataNodePositionsByCanonicalXref.get(dataNodeTypeIndex).keySet());
+		}
+		
+		/** @return the positions in {@link PathwayIndex#getDataNodesOfType(int)} of the DataNodes with this canonical Xref, 
+		 * or null if there are none */
+		List<Integer> getDataNodePositions(int dataNodeTypeIndex, Xref canonicalXref)
+		{
+			List<Integer> positions = dataNodePositionsByCanonicalXref.get(dataNodeTypeIndex).get(canonicalXref);
+			return positions != null ? Collections.unmodifiableList(positions) : null;
+		}
+	}
+}
@@ -29,9 +29,7 @@ import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 
 import javax.management.InstanceAlreadyExistsException;
@@ -103,107 +101,87 @@ public class ResultsPane extends JPanel
 	}
 
 	/** 
-	 * This method is called on every compare. It reinitializes the PathwaysInfo and results info;
-	 * and prints the comparison results inside this panel. 
+	 * This method is called at the start of every compare. It reinitializes the PathwaysInfo and results info 
+	 * and empties the results tables. While the comparison runs, its matches are added through 
+	 * {@link #addDataNodeMatches(List)} and {@link #addInteractionMatches(List)}, and finally {@link #finishResults(List, List)} is called. 
 	 * 
-	 * @param comparisonResults Data passed from ComparePopup to this class.  
 	 * @param pathwaysInfo Data passed from ComparePopup to this class.
 	 */
-	public void initializePaneAndPrintReults(ComparisonResults comparisonResults, PathwaysInfo pathwaysInfo)
+	public void startResults(PathwaysInfo pathwaysInfo)
 	{
 		this.pathwaysInfo = pathwaysInfo;
-		this.dataNodeComparisonResults_g = prepManyToManyDNComparisonListMap(comparisonResults.getDNCompResults());
-		this.interactionComparisonResults_g = comparisonResults.getInteractionCompResults();
-		
-		ComparisonResults.getStaticInstance().setDNCompResultsParsed(dataNodeComparisonResults_g);
+		this.dataNodeComparisonResults_g = new ArrayList<List<List<PathwayElement>>>();
+		this.interactionComparisonResults_g = new ArrayList<List<Set<PathwayElement>>>();
 		
 		checkBox_DataNode.setSelected(true);
 		checkBox_Line.setSelected(false);
 		
-		String[][] formattedDNcomparisonResults = parseDNcomparisonResultsIntoTableFormat(dataNodeComparisonResults_g);
-		resultsTable_DataNode = populateResultsPanel(resultsPanel_DataNode, formattedDNcomparisonResults);
+		resultsTable_DataNode = populateResultsPanel(resultsPanel_DataNode);
+		resultsTable_Line = populateResultsPanel(resultsPanel_Line);
 		
-		String[][] formattedInteractionComparsionResults = parseInteractionComparisonResultsIntoTableFormat(
-				interactionComparisonResults_g);
-		resultsTable_Line = populateResultsPanel(resultsPanel_Line, formattedInteractionComparsionResults);
+		//the comparison does not touch the VPathways, the matching Datanodes are highlighted here as they come in
+		highlightAllMatches(checkBox_DataNode);
 	}
 	
 	/**
-	 * Returns list of keys which map to the same value.
-	 *
-	 * @param map : one-to-many map which has these keys and values. 
-	 * @param value : value for which the list of keys are to be found.
+	 * Appends many-to-many DataNode matches to the results, in a single table update.
 	 */
-	private List<PathwayElement> getKeysFromValue(Map<PathwayElement, List<PathwayElement>> map, List<PathwayElement> value)
+	void addDataNodeMatches(List<List<List<PathwayElement>>> manyToManyDNMatches)
 	{
-	    List<PathwayElement> keysList = new ArrayList<PathwayElement>();
-	    for(PathwayElement key : map.keySet())
-	    {
-	      if(map.get(key).equals(value)) 
-	      { 
-	        keysList.add(key); 
-	      } 
-	    } 
-	    return keysList;
+		if(manyToManyDNMatches.isEmpty())
+			return;
+		dataNodeComparisonResults_g.addAll(manyToManyDNMatches);
+		resultsTableModel_DataNode.addRows(parseDNcomparisonResultsIntoTableFormat(manyToManyDNMatches));
+		label_DataNode.setText(resultsTable_DataNode.getRowCount() + " Results found so far");
+		if(checkBox_DataNode.isSelected())
+			for(List<List<PathwayElement>> dNMatach : manyToManyDNMatches) 
+				highlightMatchingEntityInPWs(dNMatach, false);
 	}
 	
 	/**
-	 * prepares a many-to-many list of DN matches from pathway1 to pathway2.
-	 * @param dataNodeComparisonResults : input list of one-to-one Datanode comparison results.
-	 * @return a many-to-many list of DN matches from pathway1 to pathway2.
+	 * Appends interaction matches to the results, in a single table update.
 	 */
-	private List<List<List<PathwayElement>>> prepManyToManyDNComparisonListMap(List<List<PathwayElement>> dataNodeComparisonResults)
+	void addInteractionMatches(List<List<Set<PathwayElement>>> interactionMatches)
 	{
-		List<List<List<PathwayElement>>> manyToManyDNList = new ArrayList<List<List<PathwayElement>>>(); 
-		if(dataNodeComparisonResults.isEmpty())
-			return manyToManyDNList;
-		
-		PathwayElement previousPwe = null, currentPwe = null;
-		List<PathwayElement> pweListInPathway2 = null;
-		HashMap<PathwayElement, List<PathwayElement>> oneToManyDNCompResults = new HashMap<PathwayElement, List<PathwayElement>>();
-		for(List<PathwayElement> eachDNMatch : dataNodeComparisonResults)
-		{
-			currentPwe = eachDNMatch.get(0);
-			if(previousPwe != currentPwe)
-			{
-				if(previousPwe != null)
-					oneToManyDNCompResults.put(previousPwe, pweListInPathway2);
-				pweListInPathway2 = new ArrayList<PathwayElement>();
-				
-			}
-			pweListInPathway2.add(eachDNMatch.get(1));
-			previousPwe = currentPwe;
-		}
-		oneToManyDNCompResults.put(previousPwe, pweListInPathway2); // one-to-many map ready
-		
-		HashMap<List<PathwayElement>, List<PathwayElement>> manyToManymappedDNComparisonResults = new HashMap<List<PathwayElement>, List<PathwayElement>>();
-		List<List<PathwayElement>>valuesAlreadyKeyed = new ArrayList<List<PathwayElement>>();
-		for(List<PathwayElement> eachValueInOneToManyMap : oneToManyDNCompResults.values())
-		{
-			if(valuesAlreadyKeyed.contains(eachValueInOneToManyMap))
-			{
-				continue;
-			}
-			List<PathwayElement> keysMappedToSameValues = getKeysFromValue(oneToManyDNCompResults, eachValueInOneToManyMap);
-			if(keysMappedToSameValues.size() > 1)
-				valuesAlreadyKeyed.add(eachValueInOneToManyMap);
-			manyToManymappedDNComparisonResults.put(keysMappedToSameValues, eachValueInOneToManyMap); // many-to-many map ready
-		}
-		
-		//converting many-to-many map to many-to-many list
-		//System.out.println("------ many to many map ------");
-		for(Map.Entry<List<PathwayElement>, List<PathwayElement>> mapEntry : manyToManymappedDNComparisonResults.entrySet())
-		{
-			//System.out.println(mapEntry);
-			List<List<PathwayElement>> eachMapEntry = new ArrayList<List<PathwayElement>>();
-			eachMapEntry.add(mapEntry.getKey());
-			eachMapEntry.add(mapEntry.getValue());
-			manyToManyDNList.add(eachMapEntry);
-		}
+		if(interactionMatches.isEmpty())
+			return;
+		interactionComparisonResults_g.addAll(interactionMatches);
+		resultsTableModel_Line.addRows(parseInteractionComparisonResultsIntoTableFormat(interactionMatches));
+		label_Line.setText(resultsTable_Line.getRowCount() + " Results found so far");
+		if(checkBox_Line.isSelected())
+			for(List<Set<PathwayElement>> eachInteeraction : interactionMatches)
+				highlightMatchingEntityInPWs(eachInteeraction, false);
+	}
+	
+	/**
+	 * Called once the comparison is done. Adds the matches which have not been added yet 
+	 * and shows "No match found" for the tables which stayed empty. 
+	 * 
+	 * @param manyToManyDNMatches all the many-to-many DataNode matches of the comparison.
+	 * @param interactionMatches all the interaction matches of the comparison.
+	 */
+	void finishResults(List<List<List<PathwayElement>>> manyToManyDNMatches, List<List<Set<PathwayElement>>> interactionMatches)
+	{
+		//the matches arrive in the same order as in the final results, so only the ones at the end can be missing
+		addDataNodeMatches(manyToManyDNMatches.subList(dataNodeComparisonResults_g.size(), manyToManyDNMatches.size()));
+		addInteractionMatches(interactionMatches.subList(interactionComparisonResults_g.size(), interactionMatches.size()));
 		
-		return manyToManyDNList;
+		finishResultsPanel(resultsPanel_DataNode, resultsTable_DataNode, label_DataNode);
+		finishResultsPanel(resultsPanel_Line, resultsTable_Line, label_Line);
 	}
-
+	
+	/**
+	 * Called instead of {@link #finishResults(List, List)} when the comparison is cancelled or fails: 
+	 * the matches found so far stay in the tables, marked as partial results.
+	 * 
+	 * @param reason why the comparison stopped, e.g. "Comparison cancelled"
+	 */
+	void stopResults(String reason)
+	{
+		label_DataNode.setText(reason + " - " + resultsTable_DataNode.getRowCount() + " partial results");
+		label_Line.setText(reason + " - " + resultsTable_Line.getRowCount() + " partial results");
+	}
+	
 	/**
 	 * Converts the Datanode Comparison results (in list format) into a format required by JTable (Object / String [][]).
 	 *
@@ -285,13 +263,12 @@ public class ResultsPane extends JPanel
 	
 	/**
 	 * populates Results Panel ('DataNode Comparison Results' and 'Interaction Comparison Results' panel)
-	 * with checkboxes, JTable, JLabel etc.
+	 * with checkboxes, an empty JTable, JLabel etc.
 	 * 
 	 * @param panel : the panel which has to be populated.
-	 * @param dataForTable : data which is to be shown in a JTable inside the panel. 
 	 * @return JTable contained inside the populated panel.
 	 */
-	private JTable populateResultsPanel(JPanel panel, String dataForTable[][]) 
+	private JTable populateResultsPanel(JPanel panel) 
 	{
 		JTable resultsTable; 
 		CustomTabelModel resultsTableModel; 
@@ -313,28 +290,40 @@ public class ResultsPane extends JPanel
 		}
 		
 		panel.removeAll();
-		if(dataForTable == null) 
+		if(resultsTable == null) // creates a new JTable only for the first compare and uses the same for subsequent compares
 		{
-			panel.add(setupNoMatchFoundLabel()); 
-		
-		} else {
-			if(resultsTable == null) // creates a new JTable only for the first compare and uses the same for subsequent compares
-			{
-				resultsTable =  createJTableToolTipReady(resultsTableModel);
-				resultsTable.setVisible(true);
-				resultsTable.getSelectionModel().setSelectionMode(ListSelectionModel.SINGLE_SELECTION);			
-				resultsTable.addMouseListener(resultsTableMouseClickListener);
-				resultsTable.addKeyListener(resultsTableReturnKeyListener);
-			} 
-			resultsTableModel.setDataVector(dataForTable, new String[]{"Pathway 1", "Pathway 2"});
-			resultsTable.setModel(resultsTableModel);
-			label.setText(resultsTable.getRowCount() + " Results found ");
-			panel.add(checkBox, BorderLayout.NORTH);
-			panel.add (new JScrollPane(resultsTable), BorderLayout.CENTER);
-			panel.add (label, BorderLayout.SOUTH);	
-		}			 
+			resultsTable =  createJTableToolTipReady(resultsTableModel);
+			resultsTable.setVisible(true);
+			resultsTable.getSelectionModel().setSelectionMode(ListSelectionModel.SINGLE_SELECTION);			
+			resultsTable.addMouseListener(resultsTableMouseClickListener);
+			resultsTable.addKeyListener(resultsTableReturnKeyListener);
+		} 
+		resultsTableModel.setDataVector(new String[0][], new String[]{"Pathway 1", "Pathway 2"});
+		resultsTable.setModel(resultsTableModel);
+		label.setText("Comparing ...");
+		panel.add(checkBox, BorderLayout.NORTH);
+		panel.add (new JScrollPane(resultsTable), BorderLayout.CENTER);
+		panel.add (label, BorderLayout.SOUTH);	
+		panel.revalidate();
+		panel.repaint();
 		return resultsTable;
 	}
+	
+	/**
+	 * Shows the final number of results in the panel, or replaces its contents with "No match found" if there are none.
+	 */
+	private void finishResultsPanel(JPanel panel, JTable resultsTable, JLabel label)
+	{
+		if(resultsTable.getRowCount() > 0)
+		{
+			label.setText(resultsTable.getRowCount() + " Results found ");
+			return;
+		}
+		panel.removeAll();
+		panel.add(setupNoMatchFoundLabel()); 
+		panel.revalidate();
+		panel.repaint();
+	}
 
 	/**
 	 * Creates a JTable with tool-tip set for every cell in advance. 
@@ -497,8 +486,11 @@ public class ResultsPane extends JPanel
 		pathwaysInfo.getVPathway1().setPctZoom(100);
 		pathwaysInfo.getVPathway2().setPctZoom(100);
 		
-		resultsTable_Line.getSelectionModel().clearSelection();
-		resultsTable_DataNode.getSelectionModel().clearSelection();
+		//the JTables are created by the first startResults
+		if(resultsTable_Line != null)
+			resultsTable_Line.getSelectionModel().clearSelection();
+		if(resultsTable_DataNode != null)
+			resultsTable_DataNode.getSelectionModel().clearSelection();
 		
 		if(checkbox.isSelected()) 
 		{
@@ -0,0 +1,406 @@
+// Pathway Comparison plug-in,
+// a PathVisio plug-in for comparing 2 pathways based on Datanodes and the interaction between Datanodes
+// Copyright 2006-2011 BiGCaT Bioinformatics
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+package org.pathvisio.comparepathways;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.bridgedb.DataSource;
+import org.bridgedb.IDMapper;
+import org.bridgedb.Xref;
+import org.bridgedb.bio.BioDataSource;
+import org.pathvisio.core.model.ConverterException;
+import org.pathvisio.core.model.DataNodeType;
+import org.pathvisio.core.model.ObjectType;
+import org.pathvisio.core.model.Pathway;
+import org.pathvisio.core.model.PathwayElement;
+import org.pathvisio.core.model.PathwayElement.MAnchor;
+
+/**
+ * Generates pairs of synthetic pathways of any size, for scale and stress testing of the comparison, 
+ * together with the Xref mappings they need and the number of matches the comparison is expected to find.
+ * <p>
+ * For every DataNodeType the configured number of DataNodes is created in both the pathways. A part of them 
+ * (the overlap ratio) has a counterpart in the other pathway: either with the same Xref, or (the cross DataSource ratio) 
+ * with an Xref of another DataSource which only matches through the mappings. Each of these DataNodes matches exactly 
+ * its counterpart, the other DataNodes match nothing.
+ * <p>
+ * The interactions are built on the overlapping DataNodes, every DataNode taking part in at most one interaction, 
+ * and are mirrored in the other pathway: a simple interaction is a single line between 2 DataNodes, 
+ * an anchored interaction is a line between 2 DataNodes carrying a chain of anchors, each next DataNode being connected 
+ * to the last anchor by a line carrying the next anchor. Each of them matches exactly its mirror. 
+ * Extra lines are drawn between the DataNodes without a counterpart, they never take part in a matching interaction.
+ * <p>
+ * Usage: <code>SyntheticPathwayGenerator [-datanodes &lt;type&gt;=&lt;n&gt;,...] [-overlap &lt;ratio&gt;] [-crossdatasource &lt;ratio&gt;] 
+ * [-interactions &lt;n&gt;] [-anchored &lt;n&gt;] [-anchors &lt;n&gt;] [-lines &lt;n&gt;] [-seed &lt;n&gt;] &lt;output directory&gt;</code>
+ * writes pathway1.gpml, pathway2.gpml and the mappings to mappings.txt (and, as a binary dump of an {@link InMemoryIDMapper}, 
+ * to mappings.bin), and prints the expected numbers of matches.
+ */
+public class SyntheticPathwayGenerator 
+{
+	private static final int DATANODES_PER_ROW = 50;
+	private static final double DATANODE_WIDTH = 80, DATANODE_HEIGHT = 20, COLUMN_WIDTH = 100, ROW_HEIGHT = 60;
+	
+	private final Map<DataNodeType, Integer> dataNodeCounts = new LinkedHashMap<DataNodeType, Integer>();
+	private double overlapRatio = 0.5, crossDataSourceRatio = 0.5;
+	private int simpleInteractionCount, anchoredInteractionCount, anchorsPerInteraction = 2, extraLineCount;
+	private long seed = 1;
+	
+	/** @param count number of DataNodes of the given type in each of the 2 pathways */
+	public void setDataNodeCount(DataNodeType dataNodeType, int count)
+	{
+		dataNodeCounts.put(dataNodeType, count);
+	}
+	
+	/** @param overlapRatio fraction (0 to 1) of the DataNodes of each type which have a counterpart in the other pathway */
+	public void setOverlapRatio(double overlapRatio)
+	{
+		this.overlapRatio = overlapRatio;
+	}
+	
+	/** @param crossDataSourceRatio fraction (0 to 1) of the counterparts which only match through a mapping to another DataSource */
+	public void setCrossDataSourceRatio(double crossDataSourceRatio)
+	{
+		this.crossDataSourceRatio = crossDataSourceRatio;
+	}
+	
+	/** @param simpleInteractionCount number of interactions consisting of a single line between 2 DataNodes */
+	public void setSimpleInteractionCount(int simpleInteractionCount)
+	{
+		this.simpleInteractionCount = simpleInteractionCount;
+	}
+	
+	/** 
+	 * @param anchoredInteractionCount number of interactions which are chained through anchors.
+	 * @param anchorsPerInteraction number of anchors in each of these interactions, it connects as many extra DataNodes.
+	 */
+	public void setAnchoredInteractions(int anchoredInteractionCount, int anchorsPerInteraction)
+	{
+		this.anchoredInteractionCount = anchoredInteractionCount;
+		this.anchorsPerInteraction = anchorsPerInteraction;
+	}
+	
+	/** @param extraLineCount number of lines between DataNodes without a counterpart, which do not form matching interactions */
+	public void setExtraLineCount(int extraLineCount)
+	{
+		this.extraLineCount = extraLineCount;
+	}
+	
+	/** @param seed seed of the random numbers, the same configuration and seed always give the same pathways */
+	public void setSeed(long seed)
+	{
+		this.seed = seed;
+	}
+	
+	/**
+	 * A generated pair of pathways, with the mappings between their Xrefs and the expected comparison results.
+	 */
+	public static class PathwayPair
+	{
+		private final Pathway pathway1, pathway2;
+		private final List<Xref[]> mappings;
+		private final int expectedDataNodeMatches, expectedInteractionMatches;
+		
+		private PathwayPair(Pathway pathway1, Pathway pathway2, List<Xref[]> mappings, 
+				int expectedDataNodeMatches, int expectedInteractionMatches)
+		{
+			this.pathway1 = pathway1;
+			this.pathway2 = pathway2;
+			this.mappings = Collections.unmodifiableList(mappings);
+			this.expectedDataNodeMatches = expectedDataNodeMatches;
+			this.expectedInteractionMatches = expectedInteractionMatches;
+		}
+		
+		public Pathway getPathway1()
+		{
+			return pathway1;
+		}
+		
+		public Pathway getPathway2()
+		{
+			return pathway2;
+		}
+		
+		/** @return the pairs of Xrefs which map onto each other; an Xref which maps only onto itself is paired with itself */
+		public List<Xref[]> getMappings()
+		{
+			return mappings;
+		}
+		
+		/** @return an IDMapper which knows all the mappings of the pair, to compare the pathways with */
+		public IDMapper createIDMapper()
+		{
+			return InMemoryIDMapper.fromMappings(mappings);
+		}
+		
+		/** @return the number of one-to-one DataNode matches, as returned by {@link PathwayElementComparision#compareDataNodes()} */
+		public int getExpectedDataNodeMatches()
+		{
+			return expectedDataNodeMatches;
+		}
+		
+		/** @return the number of interaction matches, as returned by {@link InteractionsComparison#compareInteractions()} */
+		public int getExpectedInteractionMatches()
+		{
+			return expectedInteractionMatches;
+		}
+	}
+	
+	/**
+	 * @throws IllegalArgumentException if there are not enough overlapping DataNodes for the interactions.
+	 */
+	public PathwayPair generatePair()
+	{
+		Random random = new Random(seed);
+		Pathway pathway1 = createEmptyPathway("Synthetic pathway 1");
+		Pathway pathway2 = createEmptyPathway("Synthetic pathway 2");
+		List<PathwayElement> overlappingDataNodes1 = new ArrayList<PathwayElement>(), overlappingDataNodes2 = new ArrayList<PathwayElement>(), 
+			otherDataNodes1 = new ArrayList<PathwayElement>(), otherDataNodes2 = new ArrayList<PathwayElement>();
+		List<Xref[]> mappings = new ArrayList<Xref[]>();
+		
+		int serialNumber = 0;
+		for(Map.Entry<DataNodeType, Integer> dataNodeCount : dataNodeCounts.entrySet())
+		{
+			DataSource dataSources[] = getDataSources(dataNodeCount.getKey());
+			int overlapCount = (int) Math.round(dataNodeCount.getValue() * overlapRatio);
+			int crossDataSourceCount = (int) Math.round(overlapCount * crossDataSourceRatio);
+			for(int i = 0; i < dataNodeCount.getValue(); i++)
+			{
+				serialNumber++;
+				String id = String.valueOf(serialNumber);
+				Xref xref1 = new Xref(id, dataSources[0]);
+				if(i < overlapCount)
+				{
+					Xref xref2 = (i < crossDataSourceCount) ? new Xref(id, dataSources[1]) : xref1;
+					mappings.add(new Xref[]{xref1, xref2});
+					overlappingDataNodes1.add(createDataNode(dataNodeCount.getKey(), xref1));
+					overlappingDataNodes2.add(createDataNode(dataNodeCount.getKey(), xref2));
+				} else 
+				{
+					//unknown to the mappings, and different in both the pathways
+					otherDataNodes1.add(createDataNode(dataNodeCount.getKey(), xref1));
+					otherDataNodes2.add(createDataNode(dataNodeCount.getKey(), new Xref("N" + id, dataSources[0])));
+				}
+			}
+		}
+		
+		//the DataNodes are added in a different order in both the pathways
+		addDataNodes(pathway1, overlappingDataNodes1, otherDataNodes1, null);
+		addDataNodes(pathway2, overlappingDataNodes2, otherDataNodes2, random);
+		
+		int requiredDataNodes = 2 * simpleInteractionCount + anchoredInteractionCount * (anchorsPerInteraction + 2);
+		if(requiredDataNodes > overlappingDataNodes1.size())
+			throw new IllegalArgumentException("The interactions need " + requiredDataNodes + 
+					" overlapping DataNodes, only " + overlappingDataNodes1.size() + " are configured");
+		
+		//the interactions take their DataNodes in a random order, so that they mix DataNodeTypes
+		List<Integer> interactionDataNodes = new ArrayList<Integer>();
+		for(int i = 0; i < overlappingDataNodes1.size(); i++)
+			interactionDataNodes.add(i);
+		Collections.shuffle(interactionDataNodes, random);
+		int next = 0;
+		for(int i = 0; i < simpleInteractionCount; i++, next += 2)
+		{
+			int dataNode1 = interactionDataNodes.get(next), dataNode2 = interactionDataNodes.get(next + 1);
+			addLine(pathway1, overlappingDataNodes1.get(dataNode1), overlappingDataNodes1.get(dataNode2));
+			addLine(pathway2, overlappingDataNodes2.get(dataNode1), overlappingDataNodes2.get(dataNode2));
+		}
+		for(int i = 0; i < anchoredInteractionCount; i++, next += anchorsPerInteraction + 2)
+		{
+			List<Integer> chain = interactionDataNodes.subList(next, next + anchorsPerInteraction + 2);
+			addAnchorChain(pathway1, overlappingDataNodes1, chain);
+			addAnchorChain(pathway2, overlappingDataNodes2, chain);
+		}
+		
+		if(otherDataNodes1.size() >= 2)
+		{
+			for(int i = 0; i < extraLineCount; i++)
+			{
+				addLine(pathway1, otherDataNodes1.get(random.nextInt(otherDataNodes1.size())), 
+						otherDataNodes1.get(random.nextInt(otherDataNodes1.size())));
+				addLine(pathway2, otherDataNodes2.get(random.nextInt(otherDataNodes2.size())), 
+						otherDataNodes2.get(random.nextInt(otherDataNodes2.size())));
+			}
+		}
+		
+		return new PathwayPair(pathway1, pathway2, mappings, overlappingDataNodes1.size(), 
+				simpleInteractionCount + anchoredInteractionCount);
+	}
+	
+	/** @return the DataSource of the DataNodes of the given type, and the one of the counterparts matching through a mapping */
+	private static DataSource[] getDataSources(DataNodeType dataNodeType)
+	{
+		if(dataNodeType == DataNodeType.METABOLITE)
+			return new DataSource[]{BioDataSource.HMDB, BioDataSource.CHEBI};
+		return new DataSource[]{BioDataSource.ENTREZ_GENE, BioDataSource.ENSEMBL};
+	}
+	
+	private static Pathway createEmptyPathway(String name)
+	{
+		Pathway pathway = new Pathway();
+		pathway.getMappInfo().setMapInfoName(name);
+		return pathway;
+	}
+	
+	private static PathwayElement createDataNode(DataNodeType dataNodeType, Xref xref)
+	{
+		PathwayElement dataNode = PathwayElement.createPathwayElement(ObjectType.DATANODE);
+		dataNode.setDataNodeType(dataNodeType);
+		dataNode.setTextLabel(dataNodeType.getName() + " " + xref.getId());
+		dataNode.setElementID(xref.getId());
+		dataNode.setDataSource(xref.getDataSource());
+		dataNode.setMWidth(DATANODE_WIDTH);
+		dataNode.setMHeight(DATANODE_HEIGHT);
+		return dataNode;
+	}
+	
+	/** adds the DataNodes to the pathway, laid out in a grid, in a random order if random is not null */
+	private static void addDataNodes(Pathway pathway, List<PathwayElement> overlappingDataNodes, List<PathwayElement> otherDataNodes, 
+			Random random)
+	{
+		List<PathwayElement> dataNodes = new ArrayList<PathwayElement>(overlappingDataNodes);
+		dataNodes.addAll(otherDataNodes);
+		if(random != null)
+			Collections.shuffle(dataNodes, random);
+		for(int i = 0; i < dataNodes.size(); i++)
+		{
+			PathwayElement dataNode = dataNodes.get(i);
+			dataNode.setMCenterX(COLUMN_WIDTH * (i % DATANODES_PER_ROW + 1));
+			dataNode.setMCenterY(ROW_HEIGHT * (i / DATANODES_PER_ROW + 1));
+			pathway.add(dataNode);
+			dataNode.setGeneratedGraphId();
+		}
+	}
+	
+	private static PathwayElement addLine(Pathway pathway, PathwayElement start, PathwayElement end)
+	{
+		return addLine(pathway, start, end.getGraphId(), end.getMCenterX(), end.getMCenterY());
+	}
+	
+	private static PathwayElement addLine(Pathway pathway, PathwayElement start, String endGraphRef, double endX, double endY)
+	{
+		PathwayElement line = PathwayElement.createPathwayElement(ObjectType.LINE);
+		line.setMStartX(start.getMCenterX());
+		line.setMStartY(start.getMCenterY());
+		line.setMEndX(endX);
+		line.setMEndY(endY);
+		pathway.add(line);
+		line.setStartGraphRef(start.getGraphId());
+		line.setEndGraphRef(endGraphRef);
+		return line;
+	}
+	
+	/**
+	 * Adds a line between the first 2 DataNodes of the chain, and connects each next DataNode 
+	 * to an anchor in the middle of the previous line.
+	 */
+	private static void addAnchorChain(Pathway pathway, List<PathwayElement> dataNodes, List<Integer> chain)
+	{
+		PathwayElement line = addLine(pathway, dataNodes.get(chain.get(0)), dataNodes.get(chain.get(1)));
+		for(int i = 2; i < chain.size(); i++)
+		{
+			MAnchor anchor = line.addMAnchor(0.5);
+			anchor.setGeneratedGraphId();
+			line = addLine(pathway, dataNodes.get(chain.get(i)), anchor.getGraphId(), 
+					(line.getMStartX() + line.getMEndX()) / 2, (line.getMStartY() + line.getMEndY()) / 2);
+		}
+	}
+	
+	/**
+	 * Writes the mappings as tab separated lines: system code and id of the first Xref, then those of the second.
+	 */
+	static void writeMappings(List<Xref[]> mappings, File file) throws IOException
+	{
+		BufferedWriter writer = new BufferedWriter(new FileWriter(file));
+		try {
+			for(Xref[] mapping : mappings)
+			{
+				writer.append(Utility.getDataSourceKey(mapping[0].getDataSource()) + "\t" + mapping[0].getId() + "\t" + 
+						Utility.getDataSourceKey(mapping[1].getDataSource()) + "\t" + mapping[1].getId());
+				writer.newLine();
+			}
+		} finally {
+			writer.close();
+		}
+	}
+	
+	private static void printUsage()
+	{
+		System.err.println("Usage: SyntheticPathwayGenerator [-datanodes <type>=<n>,...] [-overlap <ratio>] " +
+				"[-crossdatasource <ratio>] [-interactions <n>] [-anchored <n>] [-anchors <n>] [-lines <n>] [-seed <n>] <output directory>");
+	}
+	
+	public static void main(String[] args) throws IOException, ConverterException
+	{
+		BioDataSource.init();
+		SyntheticPathwayGenerator generator = new SyntheticPathwayGenerator();
+		int anchoredInteractionCount = 0, anchorsPerInteraction = 2;
+		File outputDirectory = null;
+		
+		for(int i = 0; i < args.length; i++)
+		{
+			if(args[i].equals("-datanodes") && i + 1 < args.length)
+			{
+				for(String typeAndCount : args[++i].split(","))
+				{
+					String parts[] = typeAndCount.split("=");
+					generator.setDataNodeCount(DataNodeType.byName(parts[0]), Integer.parseInt(parts[1]));
+				}
+			}
+			else if(args[i].equals("-overlap") && i + 1 < args.length)
+				generator.setOverlapRatio(Double.parseDouble(args[++i]));
+			else if(args[i].equals("-crossdatasource") && i + 1 < args.length)
+				generator.setCrossDataSourceRatio(Double.parseDouble(args[++i]));
+			else if(args[i].equals("-interactions") && i + 1 < args.length)
+				generator.setSimpleInteractionCount(Integer.parseInt(args[++i]));
+			else if(args[i].equals("-anchored") && i + 1 < args.length)
+				anchoredInteractionCount = Integer.parseInt(args[++i]);
+			else if(args[i].equals("-anchors") && i + 1 < args.length)
+				anchorsPerInteraction = Integer.parseInt(args[++i]);
+			else if(args[i].equals("-lines") && i + 1 < args.length)
+				generator.setExtraLineCount(Integer.parseInt(args[++i]));
+			else if(args[i].equals("-seed") && i + 1 < args.length)
+				generator.setSeed(Long.parseLong(args[++i]));
+			else
+				outputDirectory = new File(args[i]);
+		}
+		if(outputDirectory == null || !outputDirectory.isDirectory())
+		{
+			printUsage();
+			System.exit(1);
+		}
+		generator.setAnchoredInteractions(anchoredInteractionCount, anchorsPerInteraction);
+		if(generator.dataNodeCounts.isEmpty())
+			generator.setDataNodeCount(DataNodeType.GENEPRODUCT, 1000);
+		
+		PathwayPair pathwayPair = generator.generatePair();
+		pathwayPair.getPathway1().writeToXml(new File(outputDirectory, "pathway1.gpml"), false);
+		pathwayPair.getPathway2().writeToXml(new File(outputDirectory, "pathway2.gpml"), false);
+		writeMappings(pathwayPair.getMappings(), new File(outputDirectory, "mappings.txt"));
+		InMemoryIDMapper.fromMappings(pathwayPair.getMappings()).writeBinary(new File(outputDirectory, "mappings.bin"));
+		System.out.println("Expected DataNode matches: " + pathwayPair.getExpectedDataNodeMatches());
+		System.out.println("Expected interaction matches: " + pathwayPair.getExpectedInteractionMatches());
+	}
+}
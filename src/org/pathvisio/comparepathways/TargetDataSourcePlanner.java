@@ -0,0 +1,266 @@
+// Pathway Comparison plug-in,
+// a PathVisio plug-in for comparing 2 pathways based on Datanodes and the interaction between Datanodes
+// Copyright 2006-2011 BiGCaT Bioinformatics
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+package org.pathvisio.comparepathways;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.bridgedb.DataSource;
+import org.bridgedb.IDMapper;
+import org.bridgedb.IDMapperCapabilities;
+import org.bridgedb.IDMapperException;
+import org.bridgedb.Xref;
+
+/**
+ * Plans the mapID calls of the DataNode comparison: instead of mapping every Xref to all the DataSources found 
+ * in Pathway2, each Xref is mapped only to the DataSources of the Pathway2 DataNodes of the same DataNodeType 
+ * which the IDMapper can reach from the Xref's own DataSource (according to its capabilities). 
+ * Xrefs from which none of those DataSources can be reached are not passed on to the IDMapper at all.
+ * <p>
+ * The Xrefs are grouped on their source DataSource and their target DataSources, one {@link MappingGroup} per 
+ * combination; the {@link XrefMappingStage} maps each group in bulk and records how long it took. 
+ * {@link #getStatistics()} then reports the cost of the mapping per source DataSource.
+ */
+class TargetDataSourcePlanner 
+{
+	private final IDMapperCapabilities capabilities;
+	/** isMappingSupported answers per source and target DataSource, the capabilities of an IDMapperStack ask each of its IDMappers */
+	private final Map<DataSource, Map<DataSource, Boolean>> mappingSupported = new HashMap<DataSource, Map<DataSource, Boolean>>();
+	private final List<MappingGroup> mappingGroups = new ArrayList<MappingGroup>();
+	/** for every source DataSource, the number of its Xrefs which could not be mapped to any of the target DataSources */
+	private final Map<DataSource, Integer> skippedXrefCounts = new LinkedHashMap<DataSource, Integer>();
+	/** for every source DataSource, the number of candidate target DataSources, before dropping the unreachable ones */
+	private final Map<DataSource, Integer> candidateTargetCounts = new LinkedHashMap<DataSource, Integer>();
+	
+	/**
+	 * The Xrefs of one source DataSource which are mapped to the same target DataSources, in a single mapXrefs call. 
+	 */
+	static final class MappingGroup
+	{
+		private final DataSource sourceDataSource;
+		private final DataSource[] targetDataSources;
+		private final List<Xref> xrefs = new ArrayList<Xref>();
+		/** the Pathway2 DataNodes having one of the target DataSources, i.e. the DataNodes the Xrefs can be matched against */
+		private final int candidateDataNodeCount;
+		private volatile long mappingNanos;
+		private volatile int mappedXrefCount;
+		
+		private MappingGroup(DataSource sourceDataSource, DataSource[] targetDataSources, int candidateDataNodeCount)
+		{
+			this.sourceDataSource = sourceDataSource;
+			this.targetDataSources = targetDataSources;
+			this.candidateDataNodeCount = candidateDataNodeCount;
+		}
+		
+		List<Xref> getXrefs()
+		{
+			return xrefs;
+		}
+		
+		DataSource[] getTargetDataSources()
+		{
+			return targetDataSources.clone();
+		}
+		
+		/** called by the {@link XrefMappingStage} once the group has been mapped */
+		void mappingDone(long nanos, int mappedXrefCount)
+		{
+			this.mappingNanos = nanos;
+			this.mappedXrefCount = mappedXrefCount;
+		}
+	}
+	
+	/**
+	 * @param idMapper IDMapper with which the Xrefs are going to be mapped.
+	 */
+	TargetDataSourcePlanner(IDMapper idMapper)
+	{
+		this.capabilities = idMapper.getCapabilities();
+	}
+	
+	/**
+	 * Plans the mapping of the Pathway1 Xrefs to the DataSources of the Pathway2 DataNodes of the same DataNodeType.
+	 * @return the groups in which the Xrefs are to be mapped; every Xref which is worth mapping is in exactly one group
+	 */
+	List<MappingGroup> planPathway1Mapping(PathwayIndex pathwayIndex1, PathwayIndex pathwayIndex2)
+	{
+		//the candidate target DataSources of an Xref are those of the Pathway2 DataNodes of each type the Xref occurs in
+		Map<Xref, Set<DataSource>> candidateTargets = new LinkedHashMap<Xref, Set<DataSource>>();
+		Map<DataSource, Integer> dataNodeCounts = new HashMap<DataSource, Integer>();
+		for(int index_DNType = 0; index_DNType < PathwayIndex.NUMBER_OF_DATANODE_TYPES; index_DNType++)
+		{
+			if(pathwayIndex1.getDataNodesOfType(index_DNType).isEmpty() || pathwayIndex2.hasNoComparableXrefs(index_DNType))
+				continue;
+			Set<DataSource> dataSourcesOfType = new LinkedHashSet<DataSource>();
+			for(int j = 0; j < pathwayIndex2.getDataNodesOfType(index_DNType).size(); j++)
+			{
+				Xref xref = pathwayIndex2.getComparableXref(index_DNType, j);
+				if(xref == null)
+					continue;
+				dataSourcesOfType.add(xref.getDataSource());
+				Integer count = dataNodeCounts.get(xref.getDataSource());
+				dataNodeCounts.put(xref.getDataSource(), count == null ? 1 : count + 1);
+			}
+			for(int i = 0; i < pathwayIndex1.getDataNodesOfType(index_DNType).size(); i++)
+			{
+				Xref xref = pathwayIndex1.getComparableXref(index_DNType, i);
+				if(xref == null)
+					continue;
+				Set<DataSource> targets = candidateTargets.get(xref);
+				if(targets == null)
+				{
+					targets = new LinkedHashSet<DataSource>();
+					candidateTargets.put(xref, targets);
+				}
+				targets.addAll(dataSourcesOfType);
+			}
+		}
+		
+		for(Map.Entry<Xref, Set<DataSource>> entry : candidateTargets.entrySet())
+			addToGroup(entry.getKey(), entry.getValue(), dataNodeCounts);
+		return Collections.unmodifiableList(mappingGroups);
+	}
+	
+	/**
+	 * Plans the mapping of the Xrefs to the pivot DataSource: the Xrefs of the DataSources from which the pivot 
+	 * can not be reached are left out.
+	 */
+	List<MappingGroup> planPivotMapping(Collection<Xref> xrefs, DataSource pivotDataSource)
+	{
+		Set<DataSource> targets = Collections.singleton(pivotDataSource);
+		for(Xref xref : xrefs)
+			addToGroup(xref, targets, Collections.<DataSource, Integer>emptyMap());
+		return Collections.unmodifiableList(mappingGroups);
+	}
+	
+	/** adds the Xref to the group of its source DataSource and reachable targets, or counts it as skipped */
+	private void addToGroup(Xref xref, Set<DataSource> candidateTargets, final Map<DataSource, Integer> dataNodeCounts)
+	{
+		DataSource sourceDataSource = xref.getDataSource();
+		List<DataSource> targets = new ArrayList<DataSource>();
+		for(DataSource target : candidateTargets)
+		{
+			if(target.equals(sourceDataSource) || isMappingSupported(sourceDataSource, target))
+				targets.add(target);
+		}
+		Integer candidateTargetCount = candidateTargetCounts.get(sourceDataSource);
+		if(candidateTargetCount == null || candidateTargetCount < candidateTargets.size())
+			candidateTargetCounts.put(sourceDataSource, candidateTargets.size());
+		if(targets.isEmpty())
+		{
+			Integer skippedXrefCount = skippedXrefCounts.get(sourceDataSource);
+			skippedXrefCounts.put(sourceDataSource, skippedXrefCount == null ? 1 : skippedXrefCount + 1);
+			return;
+		}
+		
+		//the targets with the most DataNodes first, this also keeps the order the same for the same set of targets
+		Collections.sort(targets, new Comparator<DataSource>() 
+		{
+			public int compare(DataSource dataSource1, DataSource dataSource2) 
+			{
+				int difference = getCount(dataNodeCounts, dataSource2) - getCount(dataNodeCounts, dataSource1);
+				return difference != 0 ? difference : String.valueOf(dataSource1.getSystemCode()).compareTo(
+						String.valueOf(dataSource2.getSystemCode()));
+			}
+		});
+		for(MappingGroup mappingGroup : mappingGroups)
+		{
+			if(mappingGroup.sourceDataSource.equals(sourceDataSource) && 
+					Arrays.asList(mappingGroup.targetDataSources).equals(targets))
+			{
+				mappingGroup.xrefs.add(xref);
+				return;
+			}
+		}
+		int candidateDataNodeCount = 0;
+		for(DataSource target : targets)
+			candidateDataNodeCount += getCount(dataNodeCounts, target);
+		MappingGroup mappingGroup = new MappingGroup(sourceDataSource, targets.toArray(new DataSource[targets.size()]), 
+				candidateDataNodeCount);
+		mappingGroup.xrefs.add(xref);
+		mappingGroups.add(mappingGroup);
+	}
+	
+	private static int getCount(Map<DataSource, Integer> counts, DataSource dataSource)
+	{
+		Integer count = counts.get(dataSource);
+		return count != null ? count : 0;
+	}
+	
+	/** @return true if the IDMapper claims it can map from source to target, or if it can not tell */
+	private boolean isMappingSupported(DataSource source, DataSource target)
+	{
+		Map<DataSource, Boolean> supportedTargets = mappingSupported.get(source);
+		if(supportedTargets == null)
+		{
+			supportedTargets = new HashMap<DataSource, Boolean>();
+			mappingSupported.put(source, supportedTargets);
+		}
+		Boolean supported = supportedTargets.get(target);
+		if(supported == null)
+		{
+			try {
+				supported = capabilities == null || capabilities.isMappingSupported(source, target);
+			} catch (IDMapperException e) {
+				supported = true;
+			}
+			supportedTargets.put(target, supported);
+		}
+		return supported;
+	}
+	
+	/**
+	 * @return the cost of the mapping per source DataSource: the Xrefs mapped and skipped, the target DataSources 
+	 * kept out of the candidates, the Pathway2 DataNodes they cover, the time spent in the IDMapper and the Xrefs it could map.
+	 */
+	String getStatistics()
+	{
+		Set<DataSource> sourceDataSources = new LinkedHashSet<DataSource>(candidateTargetCounts.keySet());
+		StringBuilder statistics = new StringBuilder("Xref mapping plan:");
+		for(DataSource sourceDataSource : sourceDataSources)
+		{
+			int xrefCount = 0, mappedXrefCount = 0, candidateDataNodeCount = 0;
+			long mappingNanos = 0;
+			Set<DataSource> targets = new LinkedHashSet<DataSource>();
+			for(MappingGroup mappingGroup : mappingGroups)
+			{
+				if(!mappingGroup.sourceDataSource.equals(sourceDataSource))
+					continue;
+				xrefCount += mappingGroup.xrefs.size();
+				mappedXrefCount += mappingGroup.mappedXrefCount;
+				candidateDataNodeCount = Math.max(candidateDataNodeCount, mappingGroup.candidateDataNodeCount);
+				mappingNanos += mappingGroup.mappingNanos;
+				targets.addAll(Arrays.asList(mappingGroup.targetDataSources));
+			}
+			statistics.append(" [" + sourceDataSource.getSystemCode() + ": " + xrefCount + " Xrefs to " + targets.size() + 
+					" of " + candidateTargetCounts.get(sourceDataSource) + " DataSources (" + candidateDataNodeCount + 
+					" candidate DataNodes), " + getCount(skippedXrefCounts, sourceDataSource) + " skipped, " + 
+					mappedXrefCount + " mapped in " + TimeUnit.NANOSECONDS.toMillis(mappingNanos) + " ms]");
+		}
+		return statistics.toString();
+	}
+}
@@ -19,6 +19,8 @@ package org.pathvisio.comparepathways;
 import java.awt.Color;
 import java.awt.Component;
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 
@@ -27,6 +29,7 @@ import javax.swing.JOptionPane;
 import javax.swing.filechooser.FileFilter;
 import javax.swing.table.DefaultTableModel;
 
+import org.bridgedb.DataSource;
 import org.pathvisio.core.model.Pathway;
 import org.pathvisio.core.model.PathwayElement;
 import org.pathvisio.core.preferences.GlobalPreference;
@@ -67,6 +70,34 @@ public class Utility
 					(int)vPwe.getVBounds().getCenterY());
 	}
 
+	/**
+	 * Computes the similarity score shown in the comparison statistics: 
+	 * twice the number of matches divided by the total count in both the pathways.
+	 * 
+	 * @param matches number of matching Datanodes / interactions
+	 * @param countInPw1 number of Datanodes / interactions in Pathway1
+	 * @param countInPw2 number of Datanodes / interactions in Pathway2
+	 */
+	public static double getSimilarityScore(int matches, int countInPw1, int countInPw2)
+	{
+		return matches * 2.0 / (countInPw1 + countInPw2);
+	}
+	
+	/**
+	 * @return the key under which a DataSource is stored in the caches, indexes and mapping files of this plug-in: 
+	 * its system code, or its full name if it has none (e.g. a database of a GPML file which BridgeDb does not know)
+	 */
+	static String getDataSourceKey(DataSource dataSource)
+	{
+		return dataSource.getSystemCode() != null ? dataSource.getSystemCode() : dataSource.getFullName();
+	}
+	
+	/** @return the DataSource of a key written by {@link #getDataSourceKey(DataSource)} */
+	static DataSource getDataSourceByKey(String key)
+	{
+		return DataSource.systemCodeExists(key) ? DataSource.getBySystemCode(key) : DataSource.getByFullName(key);
+	}
+	
 	/**
 	 * Opens a file-chooser dialog for choosing a pathway (GPML / XML file) to load before comparison 
 	 *
@@ -198,40 +229,19 @@ public class Utility
 /**
  * It provides a single handle to access the 'Pathway' and 'VPathway' objects
  * corresponding to the 2 pathways. This info is used in comparing the 2 pathways.
+ * Every comparison has its own immutable instance, the VPathways belong to the window of that comparison.
  */
-class PathwaysInfo
+final class PathwaysInfo
 {
-	private Pathway theTwoPathwayObjects[];
-	private VPathway theTwoVPathwayObjects[];
+	private final Pathway theTwoPathwayObjects[];
+	private final VPathway theTwoVPathwayObjects[];
 
-	private static PathwaysInfo pathwaysInfo = new PathwaysInfo();
-	static PathwaysInfo getStaticInstance()
+	PathwaysInfo(Pathway pathways[], VPathway vPathways[]) 
 	{
-		return pathwaysInfo;
-	}
-
-	void setPathwaysInfo(Pathway pathways[], VPathway vPathways[]) 
-	{
-		theTwoPathwayObjects = pathways;
-		theTwoVPathwayObjects = vPathways;
-	}
-	
-	/*void setPathway1(Pathway pathway){
-		theTwoPathwayObjects[0] = pathway;
-	} 
-
-	void setPathway2(Pathway pathway){
-		theTwoPathwayObjects[1] = pathway;
-	}
-
-	void setVPathway1(VPathway vPathway){
-		theTwoVPathwayObjects[0] = vPathway;
+		theTwoPathwayObjects = pathways.clone();
+		theTwoVPathwayObjects = vPathways.clone();
 	}
 
-	void setVPathway2(VPathway vPathway){
-		theTwoVPathwayObjects[1] = vPathway;
-	}*/
-
 	Pathway getPathway1()
 	{
 		return theTwoPathwayObjects[0];
@@ -248,34 +258,33 @@ class PathwaysInfo
 	{
 		return theTwoVPathwayObjects[1];
 	}
+	
+	/** Detaches the VPathways from their Pathways, once they are no longer shown. */
+	void disposeVPathways()
+	{
+		for(VPathway vPathway : theTwoVPathwayObjects)
+			vPathway.dispose();
+	}
 }
 
 /**
  * This class stores the comparison results: DataNode and Interaction Comparison, 
  * thus providing a single handle to access both the results.
+ * Every comparison has its own instance; it is immutable, so it can be shared across threads.
  */
-class ComparisonResults
+final class ComparisonResults
 {
-	private List<List<PathwayElement>> dataNodeCompResults;
-	private List<List<List<PathwayElement>>> dNCompResultsParsed;
-	private List<List<Set<PathwayElement>>> interactionCompResults;
+	private final List<List<PathwayElement>> dataNodeCompResults;
+	private final List<List<List<PathwayElement>>> dNCompResultsParsed;
+	private final List<List<Set<PathwayElement>>> interactionCompResults;
 
-	private static ComparisonResults comparisonResults = new ComparisonResults();
-	static ComparisonResults getStaticInstance()
-	{
-		return comparisonResults;
-	}
-
-	void setComparisonResults(List<List<PathwayElement>> dataNodeComparisonResults,
+	ComparisonResults(List<List<PathwayElement>> dataNodeComparisonResults,
+			List<List<List<PathwayElement>>> dNCompResultsParsed,
 			List<List<Set<PathwayElement>>> interactionComparisonResults)
 	{
-		this.dataNodeCompResults = dataNodeComparisonResults;
-		this.interactionCompResults = interactionComparisonResults;
-	}
-
-	void setDNCompResultsParsed(List<List<List<PathwayElement>>> dNCompResultsParsed)
-	{
-		this.dNCompResultsParsed = dNCompResultsParsed;
+		this.dataNodeCompResults = Collections.unmodifiableList(new ArrayList<List<PathwayElement>>(dataNodeComparisonResults));
+		this.dNCompResultsParsed = Collections.unmodifiableList(new ArrayList<List<List<PathwayElement>>>(dNCompResultsParsed));
+		this.interactionCompResults = Collections.unmodifiableList(new ArrayList<List<Set<PathwayElement>>>(interactionComparisonResults));
 	}
 
 	List<List<PathwayElement>> getDNCompResults()
@@ -302,4 +311,19 @@ class CustomTabelModel extends DefaultTableModel
 	{
 		return false;
 	}
+	
+	/**
+	 * Appends the rows at the end of the table, with a single event for all of them 
+	 * (unlike {@link #addRow(Object[])}, which fires an event per row).
+	 */
+	@SuppressWarnings("unchecked") // DefaultTableModel's dataVector is a raw Vector
+	void addRows(Object[][] rows)
+	{
+		if(rows == null || rows.length == 0)
+			return;
+		int firstRow = getRowCount();
+		for(Object[] row : rows)
+			dataVector.add(convertToVector(row));
+		fireTableRowsInserted(firstRow, firstRow + rows.length - 1);
+	}
 }
\ No newline at end of file
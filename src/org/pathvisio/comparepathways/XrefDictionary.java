@@ -0,0 +1,147 @@
+// Pathway Comparison plug-in,
+// a PathVisio plug-in for comparing 2 pathways based on Datanodes and the interaction between Datanodes
+// Copyright 2006-2011 BiGCaT Bioinformatics
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+package org.pathvisio.comparepathways;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.bridgedb.DataSource;
+import org.bridgedb.Xref;
+
+/**
+ * Dictionary encoding of Xrefs: every distinct Xref gets an int code (0, 1, 2, ... in the order in which they are added), 
+ * and every distinct DataSource a code of its own. The codes are looked up in an open addressing hash table of ints, 
+ * so the lookups do not create any objects.
+ * <p>
+ * Not thread-safe while Xrefs are being added; once filled, it can be read from any number of threads.
+ */
+class XrefDictionary 
+{
+	private static final int INITIAL_CAPACITY = 1024;
+	
+	private final List<DataSource> dataSources = new ArrayList<DataSource>();
+	private final Map<DataSource, Integer> dataSourceCodes = new HashMap<DataSource, Integer>();
+	
+	private Xref[] xrefs = new Xref[INITIAL_CAPACITY];
+	private int[] xrefDataSourceCodes = new int[INITIAL_CAPACITY];
+	private int size;
+	/** code + 1 of the Xref hashed into each slot, 0 for an empty slot; always at most half full */
+	private int[] slots = new int[2 * INITIAL_CAPACITY];
+	
+	int size()
+	{
+		return size;
+	}
+	
+	int getDataSourceCount()
+	{
+		return dataSources.size();
+	}
+	
+	DataSource getDataSource(int dataSourceCode)
+	{
+		return dataSources.get(dataSourceCode);
+	}
+	
+	/** @return the code of the DataSource, or -1 if none of the Xrefs has this DataSource */
+	int getDataSourceCode(DataSource dataSource)
+	{
+		Integer dataSourceCode = dataSourceCodes.get(dataSource);
+		return dataSourceCode == null ? -1 : dataSourceCode;
+	}
+	
+	Xref getXref(int code)
+	{
+		return xrefs[code];
+	}
+	
+	int getXrefDataSourceCode(int code)
+	{
+		return xrefDataSourceCodes[code];
+	}
+	
+	/** @return the code of the Xref, or -1 if it is not in the dictionary */
+	int getCode(Xref xref)
+	{
+		if(xref == null || xref.getId() == null)
+			return -1;
+		int dataSourceCode = getDataSourceCode(xref.getDataSource());
+		if(dataSourceCode == -1)
+			return -1;
+		return findCode(dataSourceCode, xref.getId());
+	}
+	
+	/** @return the code of the Xref, after adding it if it is not in the dictionary yet */
+	int add(DataSource dataSource, String id)
+	{
+		Integer dataSourceCode = dataSourceCodes.get(dataSource);
+		if(dataSourceCode == null)
+		{
+			dataSourceCode = dataSources.size();
+			dataSources.add(dataSource);
+			dataSourceCodes.put(dataSource, dataSourceCode);
+		}
+		int code = findCode(dataSourceCode, id);
+		if(code != -1)
+			return code;
+		
+		if(size == xrefs.length)
+		{
+			xrefs = Arrays.copyOf(xrefs, 2 * size);
+			xrefDataSourceCodes = Arrays.copyOf(xrefDataSourceCodes, 2 * size);
+			slots = new int[4 * size];
+			for(int i = 0; i < size; i++)
+				slots[findFreeSlot(hash(xrefDataSourceCodes[i], xrefs[i].getId()))] = i + 1;
+		}
+		code = size++;
+		xrefs[code] = new Xref(id, dataSource);
+		xrefDataSourceCodes[code] = dataSourceCode;
+		slots[findFreeSlot(hash(dataSourceCode, id))] = code + 1;
+		return code;
+	}
+	
+	private int findCode(int dataSourceCode, String id)
+	{
+		int mask = slots.length - 1;
+		for(int slot = hash(dataSourceCode, id) & mask; slots[slot] != 0; slot = (slot + 1) & mask)
+		{
+			int code = slots[slot] - 1;
+			if(xrefDataSourceCodes[code] == dataSourceCode && xrefs[code].getId().equals(id))
+				return code;
+		}
+		return -1;
+	}
+	
+	private int findFreeSlot(int hash)
+	{
+		int mask = slots.length - 1;
+		int slot = hash & mask;
+		while(slots[slot] != 0)
+			slot = (slot + 1) & mask;
+		return slot;
+	}
+	
+	private static int hash(int dataSourceCode, String id)
+	{
+		int hash = id.hashCode() * 31 + dataSourceCode;
+		//spreads the high bits, the table size is a power of 2
+		return hash ^ (hash >>> 16);
+	}
+}
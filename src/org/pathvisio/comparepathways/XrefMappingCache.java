@@ -0,0 +1,249 @@
+// Pathway Comparison plug-in,
+// a PathVisio plug-in for comparing 2 pathways based on Datanodes and the interaction between Datanodes
+// Copyright 2006-2011 BiGCaT Bioinformatics
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+package org.pathvisio.comparepathways;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.bridgedb.DataSource;
+import org.bridgedb.IDMapper;
+import org.bridgedb.IDMapperCapabilities;
+import org.bridgedb.IDMapperStack;
+import org.bridgedb.Xref;
+import org.pathvisio.core.debug.Logger;
+
+/**
+ * A size-bounded (least recently used entries are evicted first) cache of Xref mappings, 
+ * shared by all the comparisons. An entry is keyed by the source Xref and the set of target DataSources 
+ * and is only valid for the BridgeDb database (gdb) it was obtained from: as soon as a different gdb is loaded, 
+ * the cache is emptied. The cache can optionally be written to and read back from a file, 
+ * so that the mappings survive PathVisio restarts.
+ * <p>
+ * All methods are synchronized, so the cache can be shared across threads.
+ */
+class XrefMappingCache 
+{
+	private static final String FIELD_SEPARATOR = "\t";
+	private static final String GDB_IDENTITY_HEADER = "#gdb";
+	
+	private final int maxEntries;
+	private String gdbIdentity = "";
+	private int hitCount, missCount, evictionCount;
+	
+	/** access ordered, so that the eldest entry is always the least recently used one */
+	private final LinkedHashMap<String, Set<Xref>> cachedMappings; 
+	
+	XrefMappingCache(int maxEntries)
+	{
+		this.maxEntries = maxEntries;
+		cachedMappings = new LinkedHashMap<String, Set<Xref>>(16, 0.75f, true)
+		{
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Set<Xref>> eldest)
+			{
+				if(size() > XrefMappingCache.this.maxEntries)
+				{
+					evictionCount++;
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+	
+	/**
+	 * Returns a String which identifies the loaded BridgeDb database(s). Two IDMappers with the same identity 
+	 * are assumed to give the same mappings. The identity is derived from the properties of the IDMappers 
+	 * (like the build date and schema version of a Derby gdb), so that it stays the same across PathVisio restarts.
+	 */
+	static String getGdbIdentity(IDMapper idMapper)
+	{
+		StringBuilder identity = new StringBuilder();
+		if(idMapper instanceof IDMapperStack)
+		{
+			IDMapperStack idMapperStack = (IDMapperStack) idMapper;
+			for(int i = 0; i < idMapperStack.getSize(); i++)
+				identity.append("[" + getGdbIdentity(idMapperStack.getIDMapperAt(i)) + "]");
+			return identity.toString();
+		}
+		
+		identity.append(idMapper.getClass().getName());
+		IDMapperCapabilities capabilities = idMapper.getCapabilities();
+		if(capabilities != null && capabilities.getKeys() != null)
+		{
+			List<String> keys = new ArrayList<String>(capabilities.getKeys());
+			Collections.sort(keys);
+			for(String key : keys)
+				identity.append(";" + key + "=" + capabilities.getProperty(key));
+		}
+		return identity.toString();
+	}
+	
+	/**
+	 * Empties the cache if the given gdb identity differs from the one the cached mappings were obtained from.
+	 * @param currentGdbIdentity identity of the currently loaded gdb, see {@link #getGdbIdentity(IDMapper)}
+	 */
+	synchronized void validate(String currentGdbIdentity)
+	{
+		if(!gdbIdentity.equals(currentGdbIdentity))
+		{
+			if(!cachedMappings.isEmpty())
+				Logger.log.info("BridgeDb database changed, clearing " + cachedMappings.size() + " cached Xref mappings");
+			cachedMappings.clear();
+			gdbIdentity = currentGdbIdentity;
+		}
+	}
+	
+	/**
+	 * Builds the key used for the target DataSources part of an entry. 
+	 * The order of the DataSources does not matter. 
+	 */
+	static String getTargetDataSourcesKey(DataSource[] targetDataSources)
+	{
+		List<String> names = new ArrayList<String>();
+		for(DataSource dataSource : targetDataSources)
+			names.add(Utility.getDataSourceKey(dataSource));
+		Collections.sort(names);
+		StringBuilder key = new StringBuilder();
+		for(String name : names)
+			key.append(name).append(",");
+		return key.toString();
+	}
+	
+	private static String getEntryKey(Xref xref, String targetDataSourcesKey)
+	{
+		return Utility.getDataSourceKey(xref.getDataSource()) + FIELD_SEPARATOR + xref.getId() + FIELD_SEPARATOR + targetDataSourcesKey;
+	}
+	
+	/**
+	 * @return the cached mappings of the Xref, or null if they are not in the cache.
+	 */
+	synchronized Set<Xref> get(Xref xref, String targetDataSourcesKey)
+	{
+		Set<Xref> mappedXrefs = cachedMappings.get(getEntryKey(xref, targetDataSourcesKey));
+		if(mappedXrefs == null)
+			missCount++;
+		else
+			hitCount++;
+		return mappedXrefs;
+	}
+	
+	/**
+	 * Adds the mappings of an Xref to the cache. An empty set records that the Xref could not be mapped.
+	 */
+	synchronized void put(Xref xref, String targetDataSourcesKey, Set<Xref> mappedXrefs)
+	{
+		cachedMappings.put(getEntryKey(xref, targetDataSourcesKey), Collections.unmodifiableSet(mappedXrefs));
+	}
+	
+	synchronized int getHitCount()
+	{
+		return hitCount;
+	}
+	
+	synchronized int getMissCount()
+	{
+		return missCount;
+	}
+	
+	synchronized int getEvictionCount()
+	{
+		return evictionCount;
+	}
+	
+	synchronized int size()
+	{
+		return cachedMappings.size();
+	}
+	
+	@Override
+	public synchronized String toString()
+	{
+		return "Xref mapping cache: " + cachedMappings.size() + " entries, " + hitCount + " hits, " + 
+			missCount + " misses, " + evictionCount + " evictions";
+	}
+	
+	/**
+	 * Writes the cached mappings to a file, least recently used first. 
+	 * Each line holds the key of an entry followed by the mapped Xrefs.
+	 */
+	synchronized void save(File file) throws IOException
+	{
+		BufferedWriter bufferedWriter = new BufferedWriter(new FileWriter(file));
+		try {
+			bufferedWriter.append(GDB_IDENTITY_HEADER + FIELD_SEPARATOR + gdbIdentity);
+			bufferedWriter.newLine();
+			for(Map.Entry<String, Set<Xref>> entry : cachedMappings.entrySet())
+			{
+				StringBuilder line = new StringBuilder(entry.getKey());
+				for(Xref mappedXref : entry.getValue())
+				{
+					if(mappedXref.getDataSource() == null)
+						continue;
+					line.append(FIELD_SEPARATOR + Utility.getDataSourceKey(mappedXref.getDataSource()) + 
+							FIELD_SEPARATOR + mappedXref.getId());
+				}
+				bufferedWriter.append(line);
+				bufferedWriter.newLine();
+			}
+		} finally {
+			bufferedWriter.close();
+		}
+	}
+	
+	/**
+	 * Reads back the mappings written by {@link #save(File)}. The mappings only stay in the cache 
+	 * if they were obtained from the gdb which is loaded at the time of the next comparison.
+	 */
+	synchronized void load(File file) throws IOException
+	{
+		BufferedReader bufferedReader = new BufferedReader(new FileReader(file));
+		try {
+			String line = bufferedReader.readLine();
+			if(line == null || !line.startsWith(GDB_IDENTITY_HEADER + FIELD_SEPARATOR))
+				return;
+			cachedMappings.clear();
+			gdbIdentity = line.substring(GDB_IDENTITY_HEADER.length() + FIELD_SEPARATOR.length());
+			
+			while((line = bufferedReader.readLine()) != null)
+			{
+				String[] fields = line.split(FIELD_SEPARATOR, -1);
+				// source DataSource, source id, target DataSources and then pairs of mapped DataSource and id
+				if(fields.length < 3 || fields.length % 2 == 0)
+					continue;
+				Set<Xref> mappedXrefs = new HashSet<Xref>();
+				for(int i = 3; i < fields.length; i += 2)
+					mappedXrefs.add(new Xref(fields[i + 1], Utility.getDataSourceByKey(fields[i])));
+				Xref xref = new Xref(fields[1], Utility.getDataSourceByKey(fields[0]));
+				put(xref, fields[2], mappedXrefs);
+			}
+		} finally {
+			bufferedReader.close();
+		}
+	}
+}
@@ -0,0 +1,222 @@
+// Pathway Comparison plug-in,
+// a PathVisio plug-in for comparing 2 pathways based on Datanodes and the interaction between Datanodes
+// Copyright 2006-2011 BiGCaT Bioinformatics
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+package org.pathvisio.comparepathways;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.bridgedb.DataSource;
+import org.bridgedb.IDMapper;
+import org.bridgedb.IDMapperException;
+import org.bridgedb.Xref;
+import org.pathvisio.core.debug.Logger;
+
+/**
+ * The mapping stage of the DataNode comparison. All the distinct Xrefs that need to be mapped are 
+ * resolved through bulk calls to the BridgeDb {@link IDMapper}, before the actual comparison starts. 
+ * The comparison then only reads the precomputed Xref mappings. 
+ * If an {@link XrefMappingCache} is given, only the Xrefs missing from the cache are passed on to the IDMapper.
+ */
+class XrefMappingStage 
+{
+	/** number of Xrefs mapped per IDMapper call; small enough for a cancel to take effect quickly, even on a slow IDMapper */
+	private static final int MAPPING_CHUNK_SIZE = 250;
+	
+	private final IDMapper idMapper;
+	private final XrefMappingCache xrefMappingCache;
+	private ComparisonProgress progress = ComparisonProgress.NONE;
+	private ComparisonMetrics.Recorder metrics = new ComparisonMetrics.Recorder();
+	private volatile boolean mappingFailed;
+	
+	/**
+	 * @param idMapper the IDMapper (usually the IDMapperStack of the loaded gdb) used for mapping the Xrefs.
+	 * @param xrefMappingCache cache shared across comparisons, can be null.
+	 */
+	XrefMappingStage(IDMapper idMapper, XrefMappingCache xrefMappingCache)
+	{
+		this.idMapper = idMapper;
+		this.xrefMappingCache = xrefMappingCache;
+	}
+	
+	/** @param progress progress to which the number of Xrefs mapped out of the total is reported */
+	void setProgress(ComparisonProgress progress)
+	{
+		this.progress = progress;
+	}
+	
+	/** @param metrics recorder to which the IDMapper calls are counted */
+	void setMetrics(ComparisonMetrics.Recorder metrics)
+	{
+		this.metrics = metrics;
+	}
+	
+	/** @return identity of the IDMapper, see {@link XrefMappingCache#getGdbIdentity(IDMapper)} */
+	String getIDMapperIdentity()
+	{
+		return XrefMappingCache.getGdbIdentity(idMapper);
+	}
+	
+	/**
+	 * Maps all the given Xrefs to the target DataSources, in chunks of {@value #MAPPING_CHUNK_SIZE} Xrefs per IDMapper call.
+	 * 
+	 * @param xrefs distinct Xrefs to map.
+	 * @param targetDataSources DataSources to which the Xrefs are to be mapped.
+	 * 
+	 * @return Xref to the set of its mapped Xrefs. Xrefs which could not be mapped have no entry in the map.
+	 * @throws java.util.concurrent.CancellationException if the comparison is cancelled while mapping.
+	 */
+	Map<Xref, Set<Xref>> mapXrefs(Collection<Xref> xrefs, DataSource[] targetDataSources)
+	{
+		Map<Xref, Set<Xref>> mappedXrefs = new HashMap<Xref, Set<Xref>>();
+		progress.start(xrefs.size());
+		mapXrefs(xrefs, targetDataSources, mappedXrefs);
+		return mappedXrefs;
+	}
+	
+	/**
+	 * Maps the Xrefs of every group to the target DataSources of the group (see {@link TargetDataSourcePlanner}), 
+	 * and records in each group how long its mapping took.
+	 * 
+	 * @return Xref to the set of its mapped Xrefs. Xrefs which could not be mapped have no entry in the map.
+	 * @throws java.util.concurrent.CancellationException if the comparison is cancelled while mapping.
+	 */
+	Map<Xref, Set<Xref>> mapXrefs(List<TargetDataSourcePlanner.MappingGroup> mappingGroups)
+	{
+		Map<Xref, Set<Xref>> mappedXrefs = new HashMap<Xref, Set<Xref>>();
+		int xrefCount = 0;
+		for(TargetDataSourcePlanner.MappingGroup mappingGroup : mappingGroups)
+			xrefCount += mappingGroup.getXrefs().size();
+		progress.start(xrefCount);
+		for(TargetDataSourcePlanner.MappingGroup mappingGroup : mappingGroups)
+		{
+			long mappingStart = System.nanoTime();
+			int previouslyMappedXrefCount = mappedXrefs.size();
+			mapXrefs(mappingGroup.getXrefs(), mappingGroup.getTargetDataSources(), mappedXrefs);
+			//the groups do not share Xrefs, so the new entries are the Xrefs of this group
+			mappingGroup.mappingDone(System.nanoTime() - mappingStart, mappedXrefs.size() - previouslyMappedXrefCount);
+		}
+		return mappedXrefs;
+	}
+	
+	/**
+	 * Maps the Xrefs of the pathways to the pivot DataSource, in bulk for the pathways whose canonical Xrefs are 
+	 * not in their PathwayIndex yet, and stores the canonical Xrefs in the PathwayIndex. The Xrefs of the DataSources 
+	 * from which the IDMapper can not reach the pivot are not mapped, they are their own canonical Xrefs.
+	 * 
+	 * @return the canonical Xrefs of each of the pathways
+	 * @throws java.util.concurrent.CancellationException if the comparison is cancelled while mapping.
+	 */
+	PathwayIndex.CanonicalXrefs[] canonicalizeXrefs(PathwayIndex[] pathwayIndexes, DataSource pivotDataSource)
+	{
+		String canonicalXrefsKey = pivotDataSource.getSystemCode() + "@" + getIDMapperIdentity();
+		PathwayIndex.CanonicalXrefs[] canonicalXrefs = new PathwayIndex.CanonicalXrefs[pathwayIndexes.length];
+		Set<Xref> xrefsToMap = new LinkedHashSet<Xref>();
+		for(int i = 0; i < pathwayIndexes.length; i++)
+		{
+			canonicalXrefs[i] = pathwayIndexes[i].getCanonicalXrefs(canonicalXrefsKey);
+			if(canonicalXrefs[i] == null)
+				xrefsToMap.addAll(pathwayIndexes[i].getComparableXrefs());
+		}
+		TargetDataSourcePlanner planner = new TargetDataSourcePlanner(idMapper);
+		Map<Xref, Set<Xref>> mappedXrefs = mapXrefs(planner.planPivotMapping(xrefsToMap, pivotDataSource));
+		metrics.setMappingStatistics(planner.getStatistics());
+		for(int i = 0; i < pathwayIndexes.length; i++)
+		{
+			if(canonicalXrefs[i] != null)
+				continue;
+			canonicalXrefs[i] = new PathwayIndex.CanonicalXrefs(pathwayIndexes[i], pivotDataSource, mappedXrefs);
+			//incomplete mappings are used for this comparison only
+			if(!mappingFailed)
+				canonicalXrefs[i] = pathwayIndexes[i].putCanonicalXrefs(canonicalXrefsKey, canonicalXrefs[i]);
+		}
+		return canonicalXrefs;
+	}
+	
+	/** maps the Xrefs to the target DataSources and adds the mapped ones to mappedXrefs */
+	private void mapXrefs(Collection<Xref> xrefs, DataSource[] targetDataSources, Map<Xref, Set<Xref>> mappedXrefs)
+	{
+		if(xrefs.isEmpty())
+			return;
+		
+		List<Xref> xrefsToMap;
+		String targetDataSourcesKey = null;
+		if(xrefMappingCache == null)
+			xrefsToMap = new ArrayList<Xref>(xrefs);
+		else
+		{
+			xrefMappingCache.validate(XrefMappingCache.getGdbIdentity(idMapper));
+			targetDataSourcesKey = XrefMappingCache.getTargetDataSourcesKey(targetDataSources);
+			xrefsToMap = new ArrayList<Xref>();
+			for(Xref xref : xrefs)
+			{
+				Set<Xref> cachedXrefs = xrefMappingCache.get(xref, targetDataSourcesKey);
+				if(cachedXrefs == null)
+					xrefsToMap.add(xref);
+				else if(!cachedXrefs.isEmpty())
+					mappedXrefs.put(xref, cachedXrefs);
+			}
+			progress.worked(xrefs.size() - xrefsToMap.size());
+			if(xrefsToMap.isEmpty())
+				return;
+		}
+		
+		try {
+			for(int chunkStart = 0; chunkStart < xrefsToMap.size(); chunkStart += MAPPING_CHUNK_SIZE)
+			{
+				List<Xref> chunk = xrefsToMap.subList(chunkStart, Math.min(chunkStart + MAPPING_CHUNK_SIZE, xrefsToMap.size()));
+				progress.checkCancelled();
+				Map<Xref, Set<Xref>> newlyMappedXrefs;
+				//IDMappers (e.g. the Derby based ones) are not necessarily thread-safe, comparisons running in parallel take turns here
+				synchronized (idMapper) {
+					newlyMappedXrefs = idMapper.mapID(chunk, targetDataSources);
+				}
+				metrics.mapIDCalled(chunk.size());
+				if(newlyMappedXrefs == null)
+				{
+					//only this chunk is lost, the Xrefs of the other chunks can still be mapped
+					mappingFailed = true;
+					Logger.log.warn("The IDMapper returned no mappings for " + chunk.size() + " Xrefs to the DataSources " + 
+							XrefMappingCache.getTargetDataSourcesKey(targetDataSources) + ", these Xrefs are compared unmapped");
+					progress.worked(chunk.size());
+					continue;
+				}
+				mappedXrefs.putAll(newlyMappedXrefs);
+				
+				if(xrefMappingCache != null)
+				{
+					for(Xref xref : chunk)
+					{
+						Set<Xref> newlyMappedXrefsForXref = newlyMappedXrefs.get(xref);
+						xrefMappingCache.put(xref, targetDataSourcesKey, newlyMappedXrefsForXref != null ? 
+								newlyMappedXrefsForXref : Collections.<Xref>emptySet());
+					}
+				}
+				progress.worked(chunk.size());
+			}
+		} catch (IDMapperException e) {
+			mappingFailed = true;
+			Logger.log.error("IDMapperException while mapping " + xrefsToMap.size() + " Xrefs to the DataSources " + 
+					XrefMappingCache.getTargetDataSourcesKey(targetDataSources), e);
+		}
+	}
+}